@@ -23,7 +23,9 @@ import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 
 /**
- * Abstract base class for iterators supporting {@link AbstractEntrySet} subclasses.
+ * Abstract base class for iterators supporting {@link AbstractEntrySet} subclasses. Iterators walk the trie they have
+ * been given directly. When it belongs to a {@link MutableTrieMap}, they are weakly consistent: they reflect the state
+ * of each subtree as of the time they enter it, and never return an entry more than once.
  *
  * @author Robert Varga
  *
@@ -35,15 +37,27 @@ abstract sealed class AbstractIterator<K, V> implements Iterator<Entry<K, V>>
     @SuppressWarnings("unchecked")
     private final Branch<K, V>[][] nodeStack = new Branch[MAX_DEPTH][];
     private final int[] positionStack = new int[MAX_DEPTH];
-    private final ImmutableTrieMap<K, V> map;
+    private final TrieMap<K, V> map;
+    // Upper bound of positions at depth 0, used when iterating over a range of slots
+    private final int limit;
 
-    private LNodeEntries<K, V> lnode;
+    private Iterator<LNodeEntry<K, V>> lnode;
     private EntryNode<K, V> current;
     private int depth = -1;
 
-    AbstractIterator(final ImmutableTrieMap<K, V> map) {
+    AbstractIterator(final TrieMap<K, V> map, final INode<K, V> root) {
         this.map = requireNonNull(map);
-        readin(map.readRoot());
+        limit = Integer.MAX_VALUE;
+        readin(root);
+    }
+
+    AbstractIterator(final TrieMap<K, V> map, final Branch<K, V>[] array, final int from, final int to) {
+        this.map = requireNonNull(map);
+        limit = to;
+        depth = 0;
+        nodeStack[0] = array;
+        positionStack[0] = from - 1;
+        advance();
     }
 
     @Override
@@ -57,9 +71,9 @@ abstract sealed class AbstractIterator<K, V> implements Iterator<Entry<K, V>>
 
         // Check LNode iterator first
         if (lnode != null) {
-            entry = lnode;
-            lnode = lnode.next();
-            if (lnode == null) {
+            entry = lnode.next();
+            if (!lnode.hasNext()) {
+                lnode = null;
                 advance();
             }
         } else {
@@ -96,9 +110,9 @@ abstract sealed class AbstractIterator<K, V> implements Iterator<Entry<K, V>>
             positionStack[depth] = -1;
             advance();
         } else if (m instanceof TNode<K, V> tn) {
-            current = tn;
+            current = tn.sn;
         } else if (m instanceof LNode<K, V> ln) {
-            lnode = ln.entries;
+            lnode = ln.entries.iterator();
         } else if (m == null) {
             current = null;
         }
@@ -107,7 +121,7 @@ abstract sealed class AbstractIterator<K, V> implements Iterator<Entry<K, V>>
     private void advance() {
         if (depth >= 0) {
             int npos = positionStack[depth] + 1;
-            if (npos < nodeStack[depth].length) {
+            if (npos < nodeStack[depth].length && (depth != 0 || npos < limit)) {
                 positionStack [depth] = npos;
                 var elem = nodeStack[depth][npos];
                 if (elem instanceof SNode) {
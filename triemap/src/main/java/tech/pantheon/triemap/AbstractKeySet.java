@@ -20,7 +20,6 @@ import static java.util.Objects.requireNonNull;
 import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Spliterator;
-import java.util.Spliterators;
 import org.eclipse.jdt.annotation.NonNull;
 
 /**
@@ -57,8 +56,8 @@ abstract sealed class AbstractKeySet<K, M extends TrieMap<K, ?>> extends Abstrac
 
     @Override
     public final Spliterator<K> spliterator() {
-        // TODO: this is backed by an Iterator, we should be able to do better
-        return Spliterators.spliterator(immutableIterator(), Long.MAX_VALUE, spliteratorCharacteristics());
+        final TrieMap<K, ?> trieMap = map;
+        return keySpliterator(trieMap, spliteratorCharacteristics());
     }
 
     @Override
@@ -69,4 +68,9 @@ abstract sealed class AbstractKeySet<K, M extends TrieMap<K, ?>> extends Abstrac
     }
 
     abstract int spliteratorCharacteristics();
+
+    private static <K, V> Spliterator<K> keySpliterator(final TrieMap<K, V> map, final int characteristics) {
+        return new TrieSpliterator<K, V, K>(map,
+            (array, from, to) -> new KeySetIterator<>(map.immutableIterator(array, from, to)), characteristics);
+    }
 }
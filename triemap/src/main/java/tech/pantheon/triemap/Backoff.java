@@ -0,0 +1,54 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Contention management for operations which need to be restarted. The first few restarts proceed immediately, as they
+ * are usually caused by the trie being renewed or cleaned up. Any further restarts indicate actual contention, hence we
+ * back off for a randomized, exponentially-growing number of spins before trying again, eventually yielding the
+ * processor.
+ */
+final class Backoff {
+    // Number of restarts which proceed immediately
+    private static final int IMMEDIATE_RESTARTS = 2;
+    // Maximum backoff is 2^MAX_SHIFT spins
+    private static final int MAX_SHIFT = 10;
+
+    private Backoff() {
+        // Hidden on purpose
+    }
+
+    /**
+     * Back off before restarting an operation.
+     *
+     * @param restarts number of times the operation has been restarted so far, including this restart
+     */
+    static void backoff(final int restarts) {
+        final int shift = restarts - IMMEDIATE_RESTARTS;
+        if (shift <= 0) {
+            return;
+        }
+        if (shift > MAX_SHIFT) {
+            // Heavy contention, give others a chance to complete
+            Thread.yield();
+        }
+        for (int spins = ThreadLocalRandom.current().nextInt(1 << Math.min(shift, MAX_SHIFT)); spins > 0; spins--) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -15,15 +15,23 @@
  */
 package tech.pantheon.triemap;
 
+import static java.util.Objects.requireNonNull;
 import static tech.pantheon.triemap.Constants.HASH_BITS;
 import static tech.pantheon.triemap.Constants.LEVEL_BITS;
+import static tech.pantheon.triemap.Constants.LEVEL_MASK;
 import static tech.pantheon.triemap.Constants.MAX_DEPTH;
 import static tech.pantheon.triemap.PresencePredicate.ABSENT;
 import static tech.pantheon.triemap.PresencePredicate.PRESENT;
 import static tech.pantheon.triemap.Result.RESTART;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 
@@ -57,6 +65,21 @@ final class CNode<K, V> extends MainNode<K, V> {
         this(gen, 0, (Branch<K, V>[]) EMPTY_ARRAY);
     }
 
+    // Returns a CNode with all of its slots populated by INodes, recursively for the specified number of levels, the
+    // last of which are empty CNodes
+    @SuppressWarnings("unchecked")
+    static <K, V> CNode<K, V> skeleton(final Gen gen, final int levels) {
+        if (levels == 0) {
+            return new CNode<>(gen);
+        }
+
+        final var arr = (Branch<K, V>[]) new Branch[1 << LEVEL_BITS];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = new INode<>(gen, skeleton(gen, levels - 1));
+        }
+        return new CNode<>(gen, -1, arr);
+    }
+
     static <K, V> MainNode<K, V> dual(final SNode<K, V> first, final @NonNull K key, final @NonNull V value,
             final int hc, final int initLev, final Gen gen) {
         final var second = new SNode<>(key, value, hc);
@@ -70,8 +93,8 @@ final class CNode<K, V> extends MainNode<K, V> {
         while (true) {
             MainNode<K, V> deepest;
             if (lev < HASH_BITS) {
-                final int xidx = fhc >>> lev & 0x1f;
-                final int yidx = hc >>> lev & 0x1f;
+                final int xidx = fhc >>> lev & LEVEL_MASK;
+                final int yidx = hc >>> lev & LEVEL_MASK;
                 final int bmp = 1 << xidx | 1 << yidx;
                 if (xidx == yidx) {
                     // enter recursion: save bitmap and increment lev
@@ -95,7 +118,7 @@ final class CNode<K, V> extends MainNode<K, V> {
     @Nullable Object computeIfAbsent(final MutableTrieMap<K, V> ct, final Gen startGen, final int hc,
             final @NonNull K key, final @NonNull Function<? super K, ? extends V> fn, final int lev,
             final INode<K, V> parent) {
-        final int idx = hc >>> lev & 0x1f;
+        final int idx = hc >>> lev & LEVEL_MASK;
         final int flag = 1 << idx;
         final int mask = flag - 1;
         final int pos = Integer.bitCount(bitmap & mask);
@@ -121,7 +144,7 @@ final class CNode<K, V> extends MainNode<K, V> {
     private @Nullable Object computeIfAbsent(final MutableTrieMap<K, V> ct, final INode<K, V> in, final int pos,
             final SNode<K, V> sn, final @NonNull K key, final @NonNull Function<? super K, ? extends V> fn,
             final int hc, final int lev) {
-        if (sn.matches(hc, key)) {
+        if (sn.matches(ct.equiv, hc, key)) {
             return sn.value();
         }
         final var val = fn.apply(key);
@@ -130,39 +153,167 @@ final class CNode<K, V> extends MainNode<K, V> {
         }
 
         final var rn = gen == in.gen ? this : renewed(ct, gen);
-        return in.gcasWrite(ct, rn.updatedAt(pos, new INode<>(in, sn, key, val, hc, lev), gen)) ? val : RESTART;
+        return in.gcasWrite(ct, rn.updatedAt(pos, new INode<>(in, sn, key, val, hc, lev), gen), 1) ? val : RESTART;
     }
 
-    @Nullable Object lookup(final TrieMap<K, V> ct, final Gen startGen, final int hc, final @NonNull K key,
-            final int lev, final INode<K, V> parent) {
-        // 1) a multinode
-        final int idx = hc >>> lev & 0x1f;
+    @Nullable Object compute(final MutableTrieMap<K, V> ct, final Gen startGen, final int hc,
+            final @NonNull K key, final @NonNull BiFunction<? super K, ? super V, ? extends V> fn, final int lev,
+            final INode<K, V> parent) {
+        final int idx = hc >>> lev & LEVEL_MASK;
         final int flag = 1 << idx;
+        final int mask = flag - 1;
+        final int pos = Integer.bitCount(bitmap & mask);
 
         if ((bitmap & flag) == 0) {
-            // 1a) bitmap shows no binding
-            return null;
+            final var val = fn.apply(key, null);
+            return val == null || insert(ct, parent, pos, flag, key, val, hc) ? val : RESTART;
         }
 
-        // 1b) bitmap contains a value - descend
-        final int pos = bitmap == 0xffffffff ? idx : Integer.bitCount(bitmap & flag - 1);
-        final var sub = array[pos];
-        if (sub instanceof INode<K, V> in) {
+        // 1a) compute below
+        final var cnAtPos = array[pos];
+        if (cnAtPos instanceof INode<K, V> in) {
             // try to renew if needed and enter next level
-            return ct.isReadOnly() || startGen == in.gen || renew(ct, parent, startGen)
-                ? in.lookup(ct, startGen, hc, key, lev + LEVEL_BITS, parent) : RESTART;
-        } else if (sub instanceof SNode<K, V> sn) {
-            // 2) singleton node
-            return sn.lookup(hc, key);
+            return startGen != in.gen && !renew(ct, parent, startGen)
+                ? RESTART : in.compute(ct, startGen, hc, key, fn, lev + LEVEL_BITS, parent);
+        } else if (cnAtPos instanceof SNode<K, V> sn) {
+            return compute(ct, parent, pos, flag, sn, key, fn, hc, lev);
+        } else {
+            throw invalidElement(cnAtPos);
+        }
+    }
+
+    private @Nullable Object compute(final MutableTrieMap<K, V> ct, final INode<K, V> in, final int pos,
+            final int flag, final SNode<K, V> sn, final @NonNull K key,
+            final @NonNull BiFunction<? super K, ? super V, ? extends V> fn, final int hc, final int lev) {
+        if (!sn.matches(ct.equiv, hc, key)) {
+            final var val = fn.apply(key, null);
+            if (val == null) {
+                return null;
+            }
+
+            final var ngen = in.gen;
+            final var rn = gen == ngen ? this : renewed(ct, ngen);
+            return in.gcasWrite(ct, rn.toUpdatedAt(this, pos, new INode<>(in, sn, key, val, hc, lev), ngen), 1)
+                ? val : RESTART;
+        }
+
+        final var val = fn.apply(key, sn.value());
+        if (val == null) {
+            return in.gcasWrite(ct, toRemoved(ct, flag, pos, lev), -1) ? null : RESTART;
+        }
+        return in.gcasWrite(ct, updatedAt(pos, key, val, hc, gen)) ? val : RESTART;
+    }
+
+    // Continuation of INode.locate()
+    Object locate(final MutableTrieMap<K, V> ct, final Gen startGen, final int hc, final int lev,
+            final INode<K, V> in, final @Nullable INode<K, V> parent) {
+        final int flag = 1 << (hc >>> lev & LEVEL_MASK);
+        if ((bitmap & flag) != 0 && array[Integer.bitCount(bitmap & flag - 1)] instanceof INode<K, V> sub) {
+            // try to renew if needed and enter next level
+            return startGen != sub.gen && !renew(ct, in, startGen)
+                ? RESTART : sub.locate(ct, startGen, hc, lev + LEVEL_BITS, in);
+        }
+        return new McasDescriptor.Location<>(in, parent, lev);
+    }
+
+    // Return the value mapped to a key in this CNode, or RESTART if the key's slot holds an INode
+    @Nullable Object slotValue(final Equivalence<? super K> equiv, final int hc, final @NonNull K key, final int lev) {
+        final int flag = 1 << (hc >>> lev & LEVEL_MASK);
+        if ((bitmap & flag) == 0) {
+            return null;
+        }
+        final var sub = array[Integer.bitCount(bitmap & flag - 1)];
+        if (sub instanceof SNode<K, V> sn) {
+            return sn.lookup(equiv, hc, key);
+        } else if (sub instanceof INode) {
+            return RESTART;
         } else {
             throw invalidElement(sub);
         }
     }
 
+    // Check whether the slot for specified hash holds a particular INode
+    boolean holds(final INode<K, V> in, final int hc, final int lev) {
+        final int flag = 1 << (hc >>> lev & LEVEL_MASK);
+        return (bitmap & flag) != 0 && array[Integer.bitCount(bitmap & flag - 1)] == in;
+    }
+
+    // Returns a copy of this CNode with specified changes applied and slots in drop bitmap removed. Slots affected by
+    // changes are expected not to hold INodes.
+    MainNode<K, V> toChanged(final TrieMap<K, V> ct, final Gen ngen, final int lev,
+            final List<McasDescriptor.Change<K, V>> changes, final int drop) {
+        final var rn = gen == ngen ? this : renewed(ct, ngen);
+        final var arr = rn.array;
+        final int bmp = bitmap;
+
+        int touched = drop;
+        for (var change : changes) {
+            touched |= 1 << (change.hc() >>> lev & LEVEL_MASK);
+        }
+
+        final var narr = newArray(Integer.bitCount(bmp | touched));
+        int nbmp = 0;
+        int src = 0;
+        int dst = 0;
+        for (int rem = bmp | touched; rem != 0; rem &= rem - 1) {
+            final int flag = rem & -rem;
+            final var existing = (bmp & flag) != 0 ? arr[src++] : null;
+            final Branch<K, V> branch;
+            if ((drop & flag) != 0) {
+                branch = null;
+            } else if ((touched & flag) != 0) {
+                branch = toChanged(ct.equiv, (SNode<K, V>) existing, flag, lev, changes, ngen);
+            } else {
+                branch = existing;
+            }
+            if (branch != null) {
+                narr[dst++] = branch;
+                nbmp |= flag;
+            }
+        }
+        return toUpdated(ngen, lev, Arrays.copyOf(narr, dst), nbmp);
+    }
+
+    // Compute the contents of a slot after changes have been applied to it
+    private static <K, V> @Nullable Branch<K, V> toChanged(final Equivalence<? super K> equiv,
+            final @Nullable SNode<K, V> existing, final int flag, final int lev,
+            final List<McasDescriptor.Change<K, V>> changes, final Gen ngen) {
+        final var entries = new ArrayList<SNode<K, V>>();
+        boolean keepExisting = existing != null;
+        for (var change : changes) {
+            final int hc = change.hc();
+            if (1 << (hc >>> lev & LEVEL_MASK) == flag) {
+                final var key = change.key();
+                if (existing != null && existing.matches(equiv, hc, key)) {
+                    keepExisting = false;
+                }
+                final var update = change.update();
+                if (update != null) {
+                    entries.add(new SNode<>(key, update, hc));
+                }
+            }
+        }
+        if (keepExisting) {
+            entries.add(existing);
+        }
+
+        return switch (entries.size()) {
+            case 0 -> null;
+            case 1 -> entries.get(0);
+            default -> {
+                entries.sort((first, second) -> Integer.compareUnsigned(prefixOrder(first.hc()),
+                    prefixOrder(second.hc())));
+                @SuppressWarnings("unchecked")
+                final SNode<K, V>[] sorted = entries.toArray(SNode[]::new);
+                yield new INode<>(ngen, build(sorted, 0, sorted.length, lev + LEVEL_BITS, ngen));
+            }
+        };
+    }
+
     boolean insert(final MutableTrieMap<K, V> ct, final Gen startGen, final int hc, final @NonNull K key,
             final @NonNull V val, final int lev, final INode<K, V> parent) {
         // 1) a multiway node
-        final int idx = hc >>> lev & 0x1f;
+        final int idx = hc >>> lev & LEVEL_MASK;
         final int flag = 1 << idx;
         final int mask = flag - 1;
         final int pos = Integer.bitCount(bitmap & mask);
@@ -186,27 +337,165 @@ final class CNode<K, V> extends MainNode<K, V> {
 
     boolean insert(final MutableTrieMap<K, V> ct, final INode<K, V> in, final int pos, final SNode<K, V> sn,
             final @NonNull K key, final @NonNull V val, final int hc, final int lev) {
-        final CNode<K, V> next;
-        if (!sn.matches(hc, key)) {
+        if (!sn.matches(ct.equiv, hc, key)) {
             final var rn = gen == in.gen ? this : renewed(ct, gen);
-            next = rn.updatedAt(pos, new INode<>(in, sn, key, val, hc, lev), gen);
-        } else {
-            next = updatedAt(pos, key, val, hc, gen);
+            return in.gcasWrite(ct, rn.updatedAt(pos, new INode<>(in, sn, key, val, hc, lev), gen), 1);
         }
-        return in.gcasWrite(ct, next);
+        return in.gcasWrite(ct, updatedAt(pos, key, val, hc, gen));
     }
 
     boolean insert(final MutableTrieMap<K, V> ct, final INode<K, V> in, final int pos, final int flag,
             final @NonNull K key, final @NonNull V val, final int hc) {
         final var ngen = in.gen;
         final var rn = gen == ngen ? this : renewed(ct, ngen);
-        return in.gcasWrite(ct, rn.toInsertedAt(this, ngen, pos, flag, key, val, hc));
+        return in.gcasWrite(ct, rn.toInsertedAt(this, ngen, pos, flag, key, val, hc), 1);
+    }
+
+    /**
+     * Insert a range of a batch of entries into this node. The batch is expected to be sorted by
+     * {@link #prefixOrder(int)}, hence entries falling into the same slot are adjacent and occur in slot order. All
+     * slots which do not hold an INode are updated with a single {@code gcasWrite()}, with any new subtrees being built
+     * off to the side. We then recurse into INodes. Any entries which could not be inserted are added to
+     * {@code failed}, for the caller to retry.
+     */
+    void insertAll(final MutableTrieMap<K, V> ct, final Gen startGen, final SNode<K, V>[] batch, final int from,
+            final int to, final int lev, final INode<K, V> parent, final List<SNode<K, V>> failed) {
+        final int bmp = bitmap;
+        int nbmp = bmp;
+        for (int i = from; i < to; i = groupEnd(batch, i, to, lev)) {
+            nbmp |= 1 << (batch[i].hc() >>> lev & LEVEL_MASK);
+        }
+
+        // Merge existing branches with the batch, making sure all INodes are renewed to parent's generation
+        final var ngen = parent.gen;
+        final var arr = array;
+        final var narr = newArray(Integer.bitCount(nbmp));
+        boolean modified = gen != ngen;
+        int added = 0;
+        int src = 0;
+        int next = from;
+        for (int dst = 0, rem = nbmp; rem != 0; dst++, rem &= rem - 1) {
+            final int flag = rem & -rem;
+            var branch = (bmp & flag) != 0 ? arr[src++] : null;
+            if (branch instanceof INode<K, V> in && in.gen != ngen) {
+                branch = in.copyToGen(ct, ngen);
+                modified = true;
+            }
+            if (next < to && 1 << (batch[next].hc() >>> lev & LEVEL_MASK) == flag) {
+                final int end = groupEnd(batch, next, to, lev);
+                if (!(branch instanceof INode)) {
+                    final var sn = (SNode<K, V>) branch;
+                    added += end - next - (sn != null && containsKey(ct.equiv, batch, next, end, sn) ? 1 : 0);
+                    branch = toBranch(ct.equiv, sn, batch, next, end, lev + LEVEL_BITS, ngen);
+                    modified = true;
+                }
+                next = end;
+            }
+            narr[dst] = branch;
+        }
+
+        if (modified && !parent.gcasWrite(ct, new CNode<>(this, ngen, nbmp, narr), added)) {
+            failed.addAll(Arrays.asList(batch).subList(from, to));
+            return;
+        }
+
+        // Descend into INodes which were present before
+        for (int i = from; i < to;) {
+            final int end = groupEnd(batch, i, to, lev);
+            final int flag = 1 << (batch[i].hc() >>> lev & LEVEL_MASK);
+            if ((bmp & flag) != 0 && arr[Integer.bitCount(bmp & flag - 1)] instanceof INode) {
+                ((INode<K, V>) narr[Integer.bitCount(nbmp & flag - 1)]).insertAll(ct, startGen, batch, i, end,
+                    lev + LEVEL_BITS, parent, failed);
+            }
+            i = end;
+        }
+    }
+
+    /**
+     * Return the sort key of a hash code, such that sorting entries using {@link Integer#compareUnsigned(int, int)}
+     * on it places entries into the order of slots they occupy on each level, i.e. the slot index at level 0 forms the
+     * most significant bits, the index at level 1 the next ones, and so on.
+     */
+    static int prefixOrder(final int hc) {
+        final int last = (MAX_DEPTH - 1) * LEVEL_BITS;
+        int ret = 0;
+        for (int lev = 0; lev < last; lev += LEVEL_BITS) {
+            ret = ret << LEVEL_BITS | hc >>> lev & LEVEL_MASK;
+        }
+        // the last level holds only the remaining bits
+        return ret << HASH_BITS - last | hc >>> last;
+    }
+
+    // Find the end of a run of entries occupying the same slot at specified level
+    private static <K, V> int groupEnd(final SNode<K, V>[] batch, final int from, final int to, final int lev) {
+        final int idx = batch[from].hc() >>> lev & LEVEL_MASK;
+        int end = from + 1;
+        while (end < to && (batch[end].hc() >>> lev & LEVEL_MASK) == idx) {
+            end++;
+        }
+        return end;
+    }
+
+    // Create a branch holding a range of batch entries and an existing SNode, unless it is superseded by the batch
+    private static <K, V> Branch<K, V> toBranch(final Equivalence<? super K> equiv, final @Nullable SNode<K, V> sn,
+            final SNode<K, V>[] batch, final int from, final int to, final int lev, final Gen gen) {
+        if (sn == null || containsKey(equiv, batch, from, to, sn)) {
+            return to - from == 1 ? batch[from] : new INode<>(gen, build(batch, from, to, lev, gen));
+        }
+
+        // Splice the SNode into its place in the batch order
+        final int order = prefixOrder(sn.hc());
+        int pos = from;
+        while (pos < to && Integer.compareUnsigned(prefixOrder(batch[pos].hc()), order) < 0) {
+            pos++;
+        }
+
+        final int len = to - from;
+        @SuppressWarnings("unchecked")
+        final SNode<K, V>[] entries = new SNode[len + 1];
+        System.arraycopy(batch, from, entries, 0, pos - from);
+        entries[pos - from] = sn;
+        System.arraycopy(batch, pos, entries, pos - from + 1, to - pos);
+        return new INode<>(gen, build(entries, 0, len + 1, lev, gen));
+    }
+
+    private static <K, V> boolean containsKey(final Equivalence<? super K> equiv, final SNode<K, V>[] batch,
+            final int from, final int to, final SNode<K, V> sn) {
+        for (int i = from; i < to; i++) {
+            if (batch[i].matches(equiv, sn.hc(), sn.key())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Build a subtree holding a range of at least two entries, the equivalent of dual() for more than two entries
+    private static <K, V> MainNode<K, V> build(final SNode<K, V>[] entries, final int from, final int to,
+            final int lev, final Gen gen) {
+        if (lev >= HASH_BITS) {
+            return new LNode<>(entries, from, to);
+        }
+
+        int bmp = 0;
+        for (int i = from; i < to; i = groupEnd(entries, i, to, lev)) {
+            bmp |= 1 << (entries[i].hc() >>> lev & LEVEL_MASK);
+        }
+
+        @SuppressWarnings("unchecked")
+        final Branch<K, V>[] arr = new Branch[Integer.bitCount(bmp)];
+        int pos = 0;
+        for (int i = from; i < to;) {
+            final int end = groupEnd(entries, i, to, lev);
+            arr[pos++] = end - i == 1 ? entries[i] : new INode<>(gen, build(entries, i, end, lev + LEVEL_BITS, gen));
+            i = end;
+        }
+        return new CNode<>(gen, bmp, arr);
     }
 
     @Nullable Object insertIf(final MutableTrieMap<K, V> ct, final Gen startGen, final int hc, final @NonNull K key,
             final @NonNull V val, final @Nullable Object cond, final int lev, final INode<K, V> parent) {
         // 1) a multiway node
-        final int idx = hc >>> lev & 0x1f;
+        final int idx = hc >>> lev & LEVEL_MASK;
         final int flag = 1 << idx;
         final int bmp = bitmap;
         final int mask = flag - 1;
@@ -233,11 +522,11 @@ final class CNode<K, V> extends MainNode<K, V> {
     private @Nullable Object insertIf(final MutableTrieMap<K, V> ct, final INode<K, V> in, final int pos,
             final SNode<K, V> sn, final @NonNull K key, final @NonNull V val, final int hc, final @Nullable Object cond,
             final int lev) {
-        if (!sn.matches(hc, key)) {
+        if (!sn.matches(ct.equiv, hc, key)) {
             if (cond == null || cond == ABSENT) {
                 final var ngen = in.gen;
                 final var rn = gen == ngen ? this : renewed(ct, ngen);
-                return in.gcasWrite(ct, rn.toUpdatedAt(this, pos, new INode<>(in, sn, key, val, hc, lev), ngen))
+                return in.gcasWrite(ct, rn.toUpdatedAt(this, pos, new INode<>(in, sn, key, val, hc, lev), ngen), 1)
                     ? null : RESTART;
             }
             return null;
@@ -252,7 +541,7 @@ final class CNode<K, V> extends MainNode<K, V> {
 
     @Nullable Object remove(final MutableTrieMap<K, V> ct, final Gen startGen, final int hc, final @NonNull K key,
             final @Nullable Object cond, final int lev, final INode<K, V> parent) {
-        final int idx = hc >>> lev & 0x1f;
+        final int idx = hc >>> lev & LEVEL_MASK;
         final int flag = 1 << idx;
         if ((bitmap & flag) == 0) {
             return null;
@@ -265,10 +554,10 @@ final class CNode<K, V> extends MainNode<K, V> {
             return startGen != in.gen && !renew(ct, parent, startGen)
                 ? RESTART : in.remove(ct, startGen, hc, key, cond, lev + LEVEL_BITS, parent);
         } else if (sub instanceof SNode<K, V> sn) {
-            if (!sn.matches(hc, key) || cond != null && !cond.equals(sn.value())) {
+            if (!sn.matches(ct.equiv, hc, key) || cond != null && !cond.equals(sn.value())) {
                 return null;
             }
-            return parent.gcasWrite(ct, toRemoved(ct, flag, pos, lev)) ? sn.value() : RESTART;
+            return parent.gcasWrite(ct, toRemoved(ct, flag, pos, lev), -1) ? sn.value() : RESTART;
         } else {
             throw invalidElement(sub);
         }
@@ -284,6 +573,247 @@ final class CNode<K, V> extends MainNode<K, V> {
         return toUpdated(gen, lev, narr, bitmap ^ flag);
     }
 
+    // Returns a copy of this CNode with all SNodes having their value replaced, including those resurrected from
+    // TNodes, and all INodes renewed to ngen
+    MainNode<K, V> toReplaced(final TrieMap<K, V> ct, final Gen ngen,
+            final BiFunction<? super K, ? super V, ? extends V> fn, final int lev) {
+        final var arr = array;
+        final int len = arr.length;
+        final var narr = newArray(len);
+        for (int i = 0; i < len; i++) {
+            var tmp = arr[i];
+            if (tmp instanceof INode<K, V> in) {
+                tmp = in.resurrect(ct);
+                if (tmp == in) {
+                    narr[i] = in.gen == ngen ? in : in.copyToGen(ct, ngen);
+                    continue;
+                }
+            }
+            if (tmp instanceof SNode<K, V> sn) {
+                narr[i] = new SNode<>(sn.key(), requireNonNull(fn.apply(sn.key(), sn.value())), sn.hc());
+            } else {
+                throw invalidElement(tmp);
+            }
+        }
+
+        return toUpdated(ngen, lev, narr, bitmap);
+    }
+
+    // Returns a copy of this CNode with all SNodes matching the filter removed, including those resurrected from
+    // TNodes, or null if there is nothing to remove. INodes are expected to have been renewed to ngen.
+    @Nullable MainNode<K, V> toFiltered(final TrieMap<K, V> ct, final Gen ngen,
+            final Predicate<? super Entry<K, V>> filter, final int lev) {
+        final var arr = array;
+        final int len = arr.length;
+        final var narr = newArray(len);
+        int bmp = bitmap;
+        int npos = 0;
+        SNode<K, V> last = null;
+        for (int i = 0, rem = bitmap; i < len; i++, rem &= rem - 1) {
+            var tmp = arr[i];
+            if (tmp instanceof INode<K, V> in) {
+                tmp = in.resurrect(ct);
+            }
+            if (tmp instanceof SNode<K, V> sn && filter.test(sn)) {
+                bmp ^= rem & -rem;
+                last = sn;
+            } else {
+                narr[npos++] = tmp;
+            }
+        }
+
+        if (last == null) {
+            return null;
+        }
+        // We cannot leave an empty CNode below the root, hence we leave the last entry tombed instead, so that our
+        // parent removes it when it resurrects it
+        return npos == 0 && lev > 0 ? new TNode<>(this, last)
+            : toUpdated(ngen, lev, Arrays.copyOf(narr, npos), bmp);
+    }
+
+    // Returns a copy of this CNode with all INodes renewed to ngen, or this CNode if they already are
+    CNode<K, V> toRenewed(final TrieMap<K, V> ct, final Gen ngen) {
+        for (var branch : array) {
+            if (branch instanceof INode<K, V> in && in.gen != ngen) {
+                return renewed(ct, ngen);
+            }
+        }
+        return this;
+    }
+
+    // Three-way merge: returns a committed copy of this CNode with changes between base and theirs applied, or null if
+    // they conflict with changes between base and this CNode. Subtrees changed on one side only are shared by
+    // reference, subtrees changed on both sides are merged recursively. The number of entries the merge adds to this
+    // CNode is accumulated into delta, visiting only the subtrees which have been changed.
+    @Nullable CNode<K, V> toMerged(final ImmutableTrieMap<K, V> ct, final CNode<K, V> base, final CNode<K, V> theirs,
+            final Gen ngen, final int lev, final EntryCounter delta) {
+        final int all = bitmap | base.bitmap | theirs.bitmap;
+        final var narr = newArray(Integer.bitCount(all));
+        int nbmp = 0;
+        int len = 0;
+        for (int rem = all; rem != 0; rem &= rem - 1) {
+            final int flag = rem & -rem;
+            final var ob = branchAt(flag);
+            final var bb = base.branchAt(flag);
+            final var tb = theirs.branchAt(flag);
+
+            final Branch<K, V> merged;
+            if (sameBranch(ct, bb, tb) || sameBranch(ct, ob, tb)) {
+                merged = ob;
+            } else if (sameBranch(ct, bb, ob)) {
+                merged = tb;
+                delta.add(sizeDelta(ct, tb, bb));
+            } else if (!(ob instanceof INode) && !(bb instanceof INode) && !(tb instanceof INode)) {
+                // Changed on both sides, no subtrees involved: merge individual mappings
+                final var entries = mergeEntries(ct.equiv, (SNode<K, V>) bb, (SNode<K, V>) ob, (SNode<K, V>) tb);
+                if (entries == null) {
+                    return null;
+                }
+                delta.add(entries.size() - (ob == null ? 0 : 1));
+                merged = switch (entries.size()) {
+                    case 0 -> null;
+                    case 1 -> entries.get(0);
+                    default -> {
+                        entries.sort((first, second) -> Integer.compareUnsigned(prefixOrder(first.hc()),
+                            prefixOrder(second.hc())));
+                        @SuppressWarnings("unchecked")
+                        final SNode<K, V>[] sorted = entries.toArray(SNode[]::new);
+                        yield new INode<>(ngen, build(sorted, 0, sorted.length, lev + LEVEL_BITS, ngen));
+                    }
+                };
+            } else {
+                // Changed on both sides, some of which hold a subtree: merge their contents
+                final int nlev = lev + LEVEL_BITS;
+                final var bcn = asCNode(ct, bb, ngen, nlev);
+                final var ocn = asCNode(ct, ob, ngen, nlev);
+                final var tcn = asCNode(ct, tb, ngen, nlev);
+                if (bcn == null || ocn == null || tcn == null) {
+                    return null;
+                }
+                final var cn = ocn.toMerged(ct, bcn, tcn, ngen, nlev, delta);
+                if (cn == null) {
+                    return null;
+                }
+                final var arr = cn.array;
+                if (arr.length == 0) {
+                    merged = null;
+                } else if (arr.length == 1 && arr[0] instanceof SNode<K, V> sn) {
+                    merged = sn;
+                } else {
+                    merged = new INode<>(ngen, cn);
+                }
+            }
+
+            if (merged != null) {
+                narr[len++] = merged;
+                nbmp |= flag;
+            }
+        }
+        return new CNode<>(ngen, nbmp, len == narr.length ? narr : Arrays.copyOf(narr, len));
+    }
+
+    // View a slot's contents as a CNode at specified level, or null if it holds an LNode
+    private static <K, V> @Nullable CNode<K, V> asCNode(final TrieMap<K, V> ct, final @Nullable Branch<K, V> branch,
+            final Gen ngen, final int lev) {
+        if (branch == null) {
+            return new CNode<>(ngen);
+        }
+        final SNode<K, V> sn;
+        if (branch instanceof SNode<K, V> snode) {
+            sn = snode;
+        } else if (branch instanceof INode<K, V> in) {
+            final var m = in.gcasReadNonNull(ct);
+            if (m instanceof CNode<K, V> cn) {
+                return cn;
+            } else if (m instanceof TNode<K, V> tn) {
+                sn = tn.sn;
+            } else {
+                return null;
+            }
+        } else {
+            throw invalidElement(branch);
+        }
+        return lev < HASH_BITS ? new CNode<>(ngen, 1 << (sn.hc() >>> lev & LEVEL_MASK), sn) : null;
+    }
+
+    private @Nullable Branch<K, V> branchAt(final int flag) {
+        return (bitmap & flag) == 0 ? null : array[Integer.bitCount(bitmap & flag - 1)];
+    }
+
+    // Difference in the number of entries between two branches of frozen trees, descending only into subtrees which
+    // differ
+    private static <K, V> int sizeDelta(final ImmutableTrieMap<K, V> ct, final @Nullable Branch<K, V> first,
+            final @Nullable Branch<K, V> second) {
+        if (sameBranch(ct, first, second)) {
+            return 0;
+        }
+        if (first instanceof INode<K, V> fin && fin.gcasReadNonNull(ct) instanceof CNode<K, V> fcn
+            && second instanceof INode<K, V> sin && sin.gcasReadNonNull(ct) instanceof CNode<K, V> scn) {
+            int sz = 0;
+            for (int rem = fcn.bitmap | scn.bitmap; rem != 0; rem &= rem - 1) {
+                final int flag = rem & -rem;
+                sz += sizeDelta(ct, fcn.branchAt(flag), scn.branchAt(flag));
+            }
+            return sz;
+        }
+        return (first == null ? 0 : first.elementSize(ct)) - (second == null ? 0 : second.elementSize(ct));
+    }
+
+    // Two branches are the same if they are identical or are INodes pointing to the same main node
+    private static <K, V> boolean sameBranch(final TrieMap<K, V> ct, final @Nullable Branch<K, V> first,
+            final @Nullable Branch<K, V> second) {
+        return first == second || first instanceof INode<K, V> fin && second instanceof INode<K, V> sin
+            && fin.gcasRead(ct) == sin.gcasRead(ct);
+    }
+
+    // Key-level three-way merge of slots holding at most a single SNode each. Returns the resulting entries, or null
+    // if a key has been changed differently on both sides.
+    private static <K, V> @Nullable List<SNode<K, V>> mergeEntries(final Equivalence<? super K> equiv,
+            final @Nullable SNode<K, V> base, final @Nullable SNode<K, V> ours, final @Nullable SNode<K, V> theirs) {
+        final var ret = new ArrayList<SNode<K, V>>(2);
+        if (ours != null && !mergeEntry(equiv, ret, ours, base, ours, theirs)) {
+            return null;
+        }
+        if (theirs != null && !sameKey(equiv, theirs, ours) && !mergeEntry(equiv, ret, theirs, base, ours, theirs)) {
+            return null;
+        }
+        if (base != null && !sameKey(equiv, base, ours) && !sameKey(equiv, base, theirs)
+            && !mergeEntry(equiv, ret, base, base, ours, theirs)) {
+            return null;
+        }
+        return ret;
+    }
+
+    private static <K, V> boolean mergeEntry(final Equivalence<? super K> equiv, final List<SNode<K, V>> entries,
+            final SNode<K, V> key, final @Nullable SNode<K, V> base, final @Nullable SNode<K, V> ours,
+            final @Nullable SNode<K, V> theirs) {
+        final var bsn = sameKey(equiv, key, base) ? base : null;
+        final var osn = sameKey(equiv, key, ours) ? ours : null;
+        final var tsn = sameKey(equiv, key, theirs) ? theirs : null;
+
+        final SNode<K, V> merged;
+        if (sameEntry(bsn, tsn) || sameEntry(osn, tsn)) {
+            merged = osn;
+        } else if (sameEntry(bsn, osn)) {
+            merged = tsn;
+        } else {
+            return false;
+        }
+        if (merged != null) {
+            entries.add(merged);
+        }
+        return true;
+    }
+
+    private static <K, V> boolean sameKey(final Equivalence<? super K> equiv, final SNode<K, V> first,
+            final @Nullable SNode<K, V> second) {
+        return second != null && first.matches(equiv, second.hc(), second.key());
+    }
+
+    private static <K, V> boolean sameEntry(final @Nullable SNode<K, V> first, final @Nullable SNode<K, V> second) {
+        return first == second || first != null && second != null && first.value().equals(second.value());
+    }
+
     // - if the branching factor is 1 for this CNode, and the child is a tombed SNode, returns its tombed version
     // - otherwise, if there is at least one non-null node below, returns the version of this node with at least some
     //   null-inodes removed (those existing when the op began)
@@ -300,11 +830,21 @@ final class CNode<K, V> extends MainNode<K, V> {
         return toUpdated(ngen, lev, narr, bitmap);
     }
 
+    // Returns toCompressed() if any of our INodes has been tombed, null otherwise
+    @Nullable MainNode<K, V> toCompacted(final TrieMap<K, V> ct, final Gen ngen, final int lev) {
+        for (var branch : array) {
+            if (branch instanceof INode<K, V> in && in.gcasRead(ct) instanceof TNode) {
+                return toCompressed(ct, ngen, lev);
+            }
+        }
+        return null;
+    }
+
     MainNode<K, V> toContracted(final Gen ngen, final int pos, final TNode<K, V> tn, final int lev) {
         final int len = array.length;
         final var narr = newArray(len);
         System.arraycopy(array, 0, narr, 0, len);
-        narr[pos] = new SNode<>(tn);
+        narr[pos] = tn.sn;
 
         return toUpdated(ngen, lev, narr, bitmap);
     }
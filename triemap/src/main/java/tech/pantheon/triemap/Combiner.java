@@ -0,0 +1,330 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static tech.pantheon.triemap.PresencePredicate.ABSENT;
+import static tech.pantheon.triemap.PresencePredicate.PRESENT;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Flat combining of single-key updates to a {@link MutableTrieMap}. Updates which keep being restarted are published to
+ * a shared list. One of the publishing threads then becomes the combiner: it evaluates all published updates against
+ * current mappings and applies their combined outcome with a single {@link MutableTrieMap#compareAndSet(java.util.Map,
+ * java.util.Map)}, which rewrites each affected CNode once. The other threads wait for their update to be completed:
+ * they spin for a short while and then park until the combiner wakes them up.
+ *
+ * <p>Published updates are evaluated in the order they have been published. Updates which do not end up changing a
+ * mapping take effect when they have been evaluated, all others when the combined update is applied.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+final class Combiner<K, V> {
+    /**
+     * An update of a single mapping.
+     */
+    abstract static sealed class Update<K, V> {
+        final @NonNull K key;
+
+        // Published updates, linked from the most recent one
+        private Update<K, V> next;
+        // The thread waiting for this update to be completed
+        private Thread waiter;
+        // Outcome of this update
+        private @Nullable Object result;
+        private @Nullable Throwable failure;
+        private volatile boolean done;
+
+        Update(final @NonNull K key) {
+            this.key = key;
+        }
+
+        /**
+         * Apply this update to the current value, setting its result.
+         *
+         * @param current current value, {@code null} if not present
+         * @return updated value, {@code null} if not present
+         */
+        abstract @Nullable V apply(@Nullable V current);
+
+        final void setResult(final @Nullable Object newResult) {
+            result = newResult;
+        }
+
+        private @Nullable Object result() {
+            final var local = failure;
+            if (local == null) {
+                return result;
+            }
+            if (local instanceof RuntimeException rte) {
+                throw rte;
+            } else if (local instanceof Error err) {
+                throw err;
+            }
+            throw new VerifyException("Unexpected failure " + local);
+        }
+    }
+
+    private static final class InsertIf<K, V> extends Update<K, V> {
+        private final @NonNull V value;
+        private final @Nullable Object cond;
+
+        InsertIf(final @NonNull K key, final @NonNull V value, final @Nullable Object cond) {
+            super(key);
+            this.value = value;
+            this.cond = cond;
+        }
+
+        @Override
+        @Nullable V apply(final @Nullable V current) {
+            if (current == null) {
+                setResult(null);
+                return cond == null || cond == ABSENT ? value : null;
+            }
+            if (cond == ABSENT) {
+                setResult(current);
+                return current;
+            }
+            if (cond == null || cond == PRESENT || cond.equals(current)) {
+                setResult(current);
+                return value;
+            }
+            setResult(null);
+            return current;
+        }
+    }
+
+    private static final class RemoveIf<K, V> extends Update<K, V> {
+        private final @Nullable Object cond;
+
+        RemoveIf(final @NonNull K key, final @Nullable Object cond) {
+            super(key);
+            this.cond = cond;
+        }
+
+        @Override
+        @Nullable V apply(final @Nullable V current) {
+            if (current == null || cond != null && !cond.equals(current)) {
+                setResult(null);
+                return current;
+            }
+            setResult(current);
+            return null;
+        }
+    }
+
+    private static final class Compute<K, V> extends Update<K, V> {
+        private final BiFunction<? super K, ? super V, ? extends V> fn;
+
+        Compute(final @NonNull K key, final BiFunction<? super K, ? super V, ? extends V> fn) {
+            super(key);
+            this.fn = fn;
+        }
+
+        @Override
+        @Nullable V apply(final @Nullable V current) {
+            final V ret = fn.apply(key, current);
+            setResult(ret);
+            return ret;
+        }
+    }
+
+    /**
+     * Number of restarts after which an update is handed off to the combiner.
+     */
+    static final int RESTARTS = 2;
+    /**
+     * Number of spins a thread waits for its update to be completed before parking.
+     */
+    private static final int SPINS = 1 << 6;
+
+    private static final VarHandle PENDING_VH;
+    private static final VarHandle OWNER_VH;
+
+    static {
+        final var lookup = MethodHandles.lookup();
+        try {
+            PENDING_VH = lookup.findVarHandle(Combiner.class, "pending", Update.class);
+            OWNER_VH = lookup.findVarHandle(Combiner.class, "owner", Thread.class);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Published updates. Never accessed directly, always go through PENDING_VH.
+    @SuppressFBWarnings(value = "UUF_UNUSED_FIELD",
+        justification = "https://github.com/spotbugs/spotbugs/issues/2749")
+    private volatile Update<K, V> pending;
+    // The thread currently acting as the combiner. Never accessed directly, always go through OWNER_VH.
+    @SuppressFBWarnings(value = "UUF_UNUSED_FIELD",
+        justification = "https://github.com/spotbugs/spotbugs/issues/2749")
+    private volatile Thread owner;
+
+    static <K, V> Update<K, V> insertIf(final @NonNull K key, final @NonNull V value, final @Nullable Object cond) {
+        return new InsertIf<>(key, value, cond);
+    }
+
+    static <K, V> Update<K, V> removeIf(final @NonNull K key, final @Nullable Object cond) {
+        return new RemoveIf<>(key, cond);
+    }
+
+    static <K, V> Update<K, V> compute(final @NonNull K key,
+            final BiFunction<? super K, ? super V, ? extends V> fn) {
+        return new Compute<>(key, fn);
+    }
+
+    /**
+     * Check whether the current thread is acting as the combiner. Updates issued by the combiner, i.e. from within an
+     * update function, must not be handed off to it.
+     *
+     * @return {@code true} if the current thread is acting as the combiner
+     */
+    boolean isCombining() {
+        return OWNER_VH.getAcquire(this) == Thread.currentThread();
+    }
+
+    /**
+     * Publish an update and wait for it to be applied, possibly acting as the combiner.
+     *
+     * @param map map to update
+     * @param update update to apply
+     * @return the result of the update
+     */
+    @Nullable Object apply(final MutableTrieMap<K, V> map, final Update<K, V> update) {
+        update.waiter = Thread.currentThread();
+        // Note: a full CAS, so that the publication is ordered before our attempt to become the combiner below
+        var witness = (Update<K, V>) PENDING_VH.getAcquire(this);
+        do {
+            update.next = witness;
+            witness = (Update<K, V>) PENDING_VH.compareAndExchange(this, update.next, update);
+        } while (witness != update.next);
+
+        for (int spins = 0; !update.done; spins++) {
+            if (OWNER_VH.compareAndSet(this, null, Thread.currentThread())) {
+                try {
+                    combine(map);
+                } finally {
+                    OWNER_VH.setVolatile(this, null);
+                }
+
+                // Updates published while we were combining may have their threads parked, waiting for us to finish.
+                // Wake one of them up, so it can take over.
+                final var next = (Update<K, V>) PENDING_VH.getVolatile(this);
+                if (next != null) {
+                    LockSupport.unpark(next.waiter);
+                }
+            } else if (spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.park(this);
+            }
+        }
+        return update.result();
+    }
+
+    @SuppressWarnings("checkstyle:illegalCatch")
+    private void combine(final MutableTrieMap<K, V> map) {
+        // Take all published updates and restore their publication order
+        final var updates = new ArrayList<Update<K, V>>();
+        for (var update = (Update<K, V>) PENDING_VH.getAndSet(this, null); update != null; update = update.next) {
+            updates.add(update);
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        try {
+            for (int restarts = 0; ; map.restart(++restarts)) {
+                // Updates to the same mapping need to be matched by the map's equivalence, just as compareAndSet() does
+                final Map<K, Slot<K, V>> slots = map.equiv == Equivalence.equals() ? new HashMap<>()
+                    : new MutableTrieMap<>(map.equiv);
+                for (int i = updates.size() - 1; i >= 0; i--) {
+                    final var update = updates.get(i);
+                    var slot = slots.get(update.key);
+                    if (slot == null) {
+                        slot = new Slot<>(update.key, map.get(update.key));
+                        slots.put(update.key, slot);
+                    }
+
+                    final var value = slot.current;
+                    update.failure = null;
+                    try {
+                        slot.current = update.apply(value);
+                    } catch (RuntimeException | Error e) {
+                        update.failure = e;
+                        slot.current = value;
+                    }
+                }
+
+                // Slot keys are distinct under any equivalence, hence we can collect them by identity
+                final var expected = new IdentityHashMap<K, V>();
+                final var changed = new IdentityHashMap<K, V>();
+                for (var slot : slots.values()) {
+                    if (slot.current != slot.initial) {
+                        if (slot.initial != null) {
+                            expected.put(slot.key, slot.initial);
+                        }
+                        if (slot.current != null) {
+                            changed.put(slot.key, slot.current);
+                        }
+                    }
+                }
+                if (map.compareAndSet(expected, changed)) {
+                    break;
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            // The combined update could not be applied, fail all updates so that their threads do not wait forever
+            for (var update : updates) {
+                update.failure = e;
+            }
+        } finally {
+            final var self = Thread.currentThread();
+            for (var update : updates) {
+                update.done = true;
+                if (update.waiter != self) {
+                    LockSupport.unpark(update.waiter);
+                }
+            }
+        }
+    }
+
+    /**
+     * The state of a single mapping while a batch of updates is being combined.
+     */
+    private static final class Slot<K, V> {
+        final @NonNull K key;
+        final @Nullable V initial;
+        @Nullable V current;
+
+        Slot(final @NonNull K key, final @Nullable V initial) {
+            this.key = key;
+            this.initial = initial;
+            current = initial;
+        }
+    }
+}
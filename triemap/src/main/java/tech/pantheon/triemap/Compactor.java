@@ -0,0 +1,72 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Background compaction of a {@link MutableTrieMap}. Removals are counted and once their number reaches a threshold,
+ * a {@link MutableTrieMap#compact()} is submitted to an {@link Executor}. At most one compaction is pending at any
+ * time, removals performed while it is running count towards the next one.
+ */
+final class Compactor {
+    private final LongAdder removals = new LongAdder();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Executor executor;
+    private final long threshold;
+
+    Compactor(final Executor executor, final long threshold) {
+        this.executor = requireNonNull(executor);
+        this.threshold = threshold;
+    }
+
+    /**
+     * Account for mappings having been removed from a map, scheduling its compaction if needed.
+     *
+     * @param map the map
+     * @param count number of mappings removed
+     */
+    void removed(final MutableTrieMap<?, ?> map, final int count) {
+        removals.add(count);
+        if (scheduled.get()) {
+            return;
+        }
+
+        final long sum = removals.sum();
+        if (sum >= threshold && scheduled.compareAndSet(false, true)) {
+            // Do not reset, so as not to lose removals which are being counted concurrently
+            removals.add(-sum);
+            try {
+                executor.execute(() -> {
+                    try {
+                        map.compact();
+                    } finally {
+                        scheduled.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The removal has already taken place, hence there is nobody to report this to. Trees are cleaned up
+                // lazily anyway, we will try again once another threshold's worth of removals has taken place.
+                scheduled.set(false);
+            }
+        }
+    }
+}
@@ -16,11 +16,14 @@
 package tech.pantheon.triemap;
 
 /**
- * Various implementation-specific constants shared across classes. Normally we would be deriving both
- * {@link #LEVEL_BITS} and {@link #MAX_DEPTH} from {@link #HASH_BITS} and size of {@link CNode#bitmap}, but that would
+ * Various implementation-specific constants shared across classes. Normally we would be deriving {@link #LEVEL_BITS},
+ * {@link #LEVEL_MASK} and {@link #MAX_DEPTH} from {@link #HASH_BITS} and size of {@link CNode#bitmap}, but that would
  * mean they would be runtime constants. We really want them to be compile-time constants. Hence we seed them manually
  * and assert the constants are correct.
  *
+ * <p>This also means the fan-out is the same at all levels of all TrieMaps: each level indexes {@link CNode#bitmap},
+ * hence it cannot consume more than {@link #LEVEL_BITS} bits.
+ *
  * @author Robert Varga
  */
 final class Constants {
@@ -34,6 +37,12 @@ final class Constants {
      */
     static final int LEVEL_BITS = 5;
 
+    /**
+     * Mask of hash bits consumed in each CNode level, once shifted to the level. This corresponds to
+     * {@code (1 << LEVEL_BITS) - 1}.
+     */
+    static final int LEVEL_MASK = 0x1f;
+
     /**
      * Maximum depth of a TrieMap. Maximum number of CNode levels. This corresponds to
      * {@code Math.ceil(HASH_BITS / LEVEL_BITS)}.
@@ -0,0 +1,59 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of entries in a {@link MutableTrieMap}, maintained incrementally. It is attached to the root's generation
+ * and shared by all generations the root goes through via snapshots. Modifications account for the entries they add or
+ * remove once they have been committed, hence the count may lag behind concurrent modifications, but it is exact once
+ * they have completed.
+ */
+final class EntryCounter {
+    private final LongAdder delta = new LongAdder();
+
+    // Either an Integer holding the number of entries we have started with, or an ImmutableTrieMap whose size has not
+    // been computed yet
+    private volatile Object base;
+
+    EntryCounter() {
+        base = 0;
+    }
+
+    EntryCounter(final ImmutableTrieMap<?, ?> base) {
+        this.base = base;
+    }
+
+    void add(final int entries) {
+        if (entries != 0) {
+            delta.add(entries);
+        }
+    }
+
+    long sum() {
+        final var local = base;
+        final int initial;
+        if (local instanceof Integer size) {
+            initial = size;
+        } else {
+            // Computing the size is idempotent, hence we do not care about concurrent threads doing the same
+            initial = ((ImmutableTrieMap<?, ?>) local).size();
+            base = initial;
+        }
+        return initial + delta.sum();
+    }
+}
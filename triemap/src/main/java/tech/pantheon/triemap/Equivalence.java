@@ -16,35 +16,140 @@
 package tech.pantheon.triemap;
 
 import java.io.Serializable;
-import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.NonNull;
 
 /**
- * Internal equivalence class, similar to com.google.common.base.Equivalence, but explicitly not handling
- * nulls. We use equivalence only for keys, which are guaranteed to be non-null.
+ * A strategy for determining whether two keys are equivalent, similar to com.google.common.base.Equivalence, but
+ * explicitly not handling nulls. We use equivalence only for keys, which are guaranteed to be non-null.
  *
+ * <p>A {@link TrieMap} created with {@link TrieMap#create(Equivalence)} uses its equivalence for all key comparisons
+ * and for computing key hashes. Note that {@link TrieMap#equals(Object)} and {@link TrieMap#hashCode()} continue to
+ * use {@link Object#equals(Object)} and {@link Object#hashCode()}, hence maps using any equivalence other than
+ * {@link #equals()} do not fulfill the general {@link java.util.Map} contract, much like
+ * {@link java.util.IdentityHashMap}.
+ *
+ * <p>Implementations need to be {@link Serializable} in order for their maps to be serializable.
+ *
+ * @param <T> the type of objects this equivalence applies to
  * @author Robert Varga
  */
-@NonNullByDefault
-abstract class Equivalence implements Serializable {
+public abstract class Equivalence<T> implements Serializable {
     @java.io.Serial
     private static final long serialVersionUID = 1L;
 
-    static final class Equals extends Equivalence {
+    static final class Equals extends Equivalence<Object> {
         @java.io.Serial
         private static final long serialVersionUID = 1L;
 
         static final Equals INSTANCE = new Equals();
 
         @Override
-        Equivalence resolve() {
+        public int hash(final @NonNull Object obj) {
+            return obj.hashCode();
+        }
+
+        @Override
+        public boolean equivalent(final @NonNull Object first, final @NonNull Object second) {
+            return first.equals(second);
+        }
+
+        @Override
+        boolean consistentWithOrdering() {
+            return true;
+        }
+
+        @Override
+        Equivalence<?> resolve() {
+            return INSTANCE;
+        }
+    }
+
+    static final class Identity extends Equivalence<Object> {
+        @java.io.Serial
+        private static final long serialVersionUID = 1L;
+
+        static final Identity INSTANCE = new Identity();
+
+        @Override
+        public int hash(final @NonNull Object obj) {
+            return System.identityHashCode(obj);
+        }
+
+        @Override
+        public boolean equivalent(final @NonNull Object first, final @NonNull Object second) {
+            return first == second;
+        }
+
+        @Override
+        boolean consistentWithOrdering() {
+            return true;
+        }
+
+        @Override
+        Equivalence<?> resolve() {
             return INSTANCE;
         }
     }
 
+    /**
+     * Default constructor, for use by subclasses.
+     */
+    protected Equivalence() {
+        // Nothing else
+    }
+
+    /**
+     * Return the equivalence based on {@link Object#equals(Object)} and {@link Object#hashCode()}. This is the
+     * equivalence used by {@link TrieMap#create()}.
+     *
+     * @return Equivalence based on {@link Object#equals(Object)}
+     */
+    public static Equivalence<Object> equals() {
+        return Equals.INSTANCE;
+    }
+
+    /**
+     * Return the equivalence based on object identity and {@link System#identityHashCode(Object)}.
+     *
+     * @return Equivalence based on object identity
+     */
+    public static Equivalence<Object> identity() {
+        return Identity.INSTANCE;
+    }
+
+    /**
+     * Return the hash code of an object. Equivalent objects must have equal hash codes.
+     *
+     * @param obj Object to hash, never null
+     * @return Hash code of the object
+     */
+    public abstract int hash(T obj);
+
+    /**
+     * Determine whether two objects are equivalent. This method must be reflexive, symmetric and transitive.
+     *
+     * @param first First object, never null
+     * @param second Second object, never null
+     * @return {@code true} if the objects are equivalent
+     */
+    public abstract boolean equivalent(T first, T second);
+
+    /**
+     * Determine whether equivalent keys are guaranteed to be equal by their {@link Comparable#compareTo(Object)}, so
+     * that collision trees can be searched by their ordering.
+     *
+     * @return {@code true} if equivalent keys always compare as equal
+     */
+    boolean consistentWithOrdering() {
+        return false;
+    }
+
     @java.io.Serial
     final Object readResolve() {
         return resolve();
     }
 
-    abstract Equivalence resolve();
+    Equivalence<?> resolve() {
+        return this;
+    }
 }
@@ -16,5 +16,14 @@
 package tech.pantheon.triemap;
 
 final class Gen {
-    // Just an identity object
+    // An identity object, carrying the entry counter of the map whose root is in this generation
+    final EntryCounter entries;
+
+    Gen() {
+        this(new EntryCounter());
+    }
+
+    Gen(final EntryCounter entries) {
+        this.entries = entries;
+    }
 }
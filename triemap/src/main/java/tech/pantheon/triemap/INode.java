@@ -17,12 +17,18 @@ package tech.pantheon.triemap;
 
 import static java.util.Objects.requireNonNull;
 import static tech.pantheon.triemap.Constants.LEVEL_BITS;
+import static tech.pantheon.triemap.Constants.LEVEL_MASK;
 import static tech.pantheon.triemap.Result.RESTART;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -31,7 +37,7 @@ final class INode<K, V> implements Branch<K, V>, MutableTrieMap.Root<K, V> {
     /**
      * A GCAS-protected {@link MainNode}. This can be effectively either a {@link FailedGcas} or a {@link MainNode}.
      */
-    private sealed interface Gcas<K, V> permits FailedGcas, TryGcas {
+    private sealed interface Gcas<K, V> permits FailedGcas, McasGcas, TryGcas {
         // Nothing else
     }
 
@@ -51,6 +57,18 @@ final class INode<K, V> implements Branch<K, V>, MutableTrieMap.Root<K, V> {
         }
     }
 
+    /**
+     * A {@link MainNode} being installed by an {@link McasDescriptor}, which decides whether it gets committed or
+     * whether {@code orig} gets restored.
+     */
+    @NonNullByDefault
+    private record McasGcas<K, V>(MainNode<K, V> orig, McasDescriptor<K, V> desc) implements Gcas<K, V> {
+        McasGcas {
+            requireNonNull(orig);
+            requireNonNull(desc);
+        }
+    }
+
     /**
      * A {@link MainNode} has potentially some restoration work attached to it. The work is tracked in {@code prev}
      * field and undergoes different lifecycles based on which constructor is invoked.
@@ -131,20 +149,42 @@ final class INode<K, V> implements Branch<K, V>, MutableTrieMap.Root<K, V> {
     }
 
     MainNode<K, V> gcasRead(final TrieMap<?, ?> ct) {
-        return gcasComplete(ct, (MainNode<K, V>) MAIN_VH.getVolatile(this));
+        return gcasComplete(ct, (MainNode<K, V>) MAIN_VH.getVolatile(this), false);
+    }
+
+    /**
+     * Read the committed main node on behalf of a {@link RootSwap} which has been installed in {@code ct}. Unlike
+     * {@link #gcasRead(TrieMap)}, this method rolls back any GCAS which has not been committed yet instead of
+     * completing it, as completing it would require the outcome of the swap itself.
+     */
+    MainNode<K, V> rollbackRead(final TrieMap<?, ?> ct) {
+        return gcasComplete(ct, (MainNode<K, V>) MAIN_VH.getVolatile(this), true);
     }
 
     boolean gcasWrite(final TrieMap<?, ?> ct, final MainNode<K, V> next) {
         // note: plain read of 'next', i.e. take a look at what we are about to CAS-out
         if (MAIN_VH.compareAndSet(this, VerifyException.throwIfNull(PREV_VH.get(next)), next)) {
             // established as write, now try to complete it and report if we have succeeded
-            gcasComplete(ct, next);
+            gcasComplete(ct, next, false);
             return PREV_VH.getVolatile(next) == null;
         }
         return false;
     }
 
-    private MainNode<K, V> gcasComplete(final TrieMap<?, ?> ct, final MainNode<K, V> firstMain) {
+    // gcasWrite() a main node holding a different number of entries, accounting for them once it has been committed
+    boolean gcasWrite(final TrieMap<?, ?> ct, final MainNode<K, V> next, final int delta) {
+        if (gcasWrite(ct, next)) {
+            gen.entries.add(delta);
+            if (delta < 0) {
+                ct.removed(-delta);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private MainNode<K, V> gcasComplete(final TrieMap<?, ?> ct, final MainNode<K, V> firstMain,
+            final boolean rollback) {
         // complete the GCAS starting at firstMain
         var currentMain = firstMain;
 
@@ -181,8 +221,7 @@ final class INode<K, V> implements Branch<K, V>, MutableTrieMap.Root<K, V> {
                     // or both
                     //
                     // Note: we deal with the abort case first
-                    final var ctr = ct.readRoot(true);
-                    if (ctr.gen != gen || ct.isReadOnly()) {
+                    if (rollback || ct.readRoot(true).gen != gen || ct.isReadOnly()) {
                         // try to abort
                         PREV_VH.compareAndSet(currentMain, prev, new FailedGcas<>(prevMain));
                         // Tail recursion: gcasComplete(mainNode, ct)
@@ -197,6 +236,28 @@ final class INode<K, V> implements Branch<K, V>, MutableTrieMap.Root<K, V> {
                         return currentMain;
                     }
 
+                    // internal recursion: same main, different prev
+                    prev = witness;
+                } else if (prev instanceof McasGcas<K, V> prevMcas) {
+                    if (!(rollback ? prevMcas.desc.abort() : prevMcas.desc.resolve(ct))) {
+                        // failed: restore the original
+                        final var orig = prevMcas.orig;
+                        final var witness = (MainNode<K, V>) MAIN_VH.compareAndExchange(this, currentMain, orig);
+                        if (witness == currentMain) {
+                            return orig;
+                        }
+
+                        // Tail recursion: gcasComplete(witness, ct);
+                        nextMain = witness;
+                        break;
+                    }
+
+                    // succeeded: commit
+                    final var witness = (Gcas<K, V>) PREV_VH.compareAndExchange(currentMain, prev, null);
+                    if (witness == prev || witness == null) {
+                        return currentMain;
+                    }
+
                     // internal recursion: same main, different prev
                     prev = witness;
                 } else {
@@ -214,6 +275,34 @@ final class INode<K, V> implements Branch<K, V>, MutableTrieMap.Root<K, V> {
         }
     }
 
+    /**
+     * Attach a main node to an {@link McasDescriptor} before it is installed, so that it is committed or rolled back to
+     * {@code expected} based on the descriptor's outcome.
+     */
+    static <K, V> void prepareInstall(final MainNode<K, V> next, final MainNode<K, V> expected,
+            final McasDescriptor<K, V> desc) {
+        // plain store, the main node is published by install()
+        PREV_VH.set(next, new McasGcas<>(expected, desc));
+    }
+
+    /**
+     * Install a main node on behalf of an {@link McasDescriptor}, completing any pending GCAS in the way.
+     *
+     * @return {@code false} if the {@code expected} main node has been replaced
+     */
+    boolean install(final MutableTrieMap<K, V> ct, final MainNode<K, V> expected, final MainNode<K, V> next) {
+        while (true) {
+            final var witness = (MainNode<K, V>) MAIN_VH.compareAndExchange(this, expected, next);
+            if (witness == expected || witness == next) {
+                return true;
+            }
+            if (witness == null || PREV_VH.getVolatile(witness) == null) {
+                return false;
+            }
+            gcasComplete(ct, witness, false);
+        }
+    }
+
     INode<K, V> copyToGen(final TrieMap<K, V> ct, final Gen ngen) {
         return new INode<>(ngen, gcasRead(ct));
     }
@@ -224,7 +313,8 @@ final class INode<K, V> implements Branch<K, V>, MutableTrieMap.Root<K, V> {
     }
 
     /**
-     * Looks up the value associated with the key.
+     * Looks up the value associated with the key. This method is invoked on the root and descends the levels in a
+     * loop rather than through recursion, so that the entire read path can be compiled as a single method.
      *
      * @param ct the ctrie
      * @param hc the hash code
@@ -232,40 +322,90 @@ final class INode<K, V> implements Branch<K, V>, MutableTrieMap.Root<K, V> {
      * @return null if no value has been found, RESTART if the operation was not successful, or any other value
      *         otherwise
      */
-    @Nullable Object lookup(final TrieMap<K, V> ct, final Gen startGen, final int hc, final @NonNull K key,
-            final int lev, final INode<K, V> parent) {
-        final var m = gcasRead(ct);
+    @Nullable Object lookup(final TrieMap<K, V> ct, final int hc, final @NonNull K key) {
+        INode<K, V> in = this;
+        INode<K, V> parent = null;
+        int lev = 0;
 
-        if (m instanceof CNode<K, V> cn) {
-            return cn.lookup(ct, startGen, hc, key, lev, this);
-        } else if (m instanceof TNode<K, V> tn) {
-            // 3) non-live node
-            if (ct.isReadOnly()) {
-                // read-only side does not clean up
-                return tn.hc == hc && key.equals(tn.key) ? tn.value : null;
+        while (true) {
+            final var m = in.gcasRead(ct);
+            if (m instanceof CNode<K, V> cn) {
+                // 1) a multinode
+                final int idx = hc >>> lev & LEVEL_MASK;
+                final int flag = 1 << idx;
+                final int bmp = cn.bitmap;
+                if ((bmp & flag) == 0) {
+                    // 1a) bitmap shows no binding
+                    return null;
+                }
+
+                // 1b) bitmap contains a value - descend
+                final var sub = cn.array[bmp == 0xffffffff ? idx : Integer.bitCount(bmp & flag - 1)];
+                if (sub instanceof SNode<K, V> sn) {
+                    // 2) singleton node
+                    return sn.lookup(ct.equiv, hc, key);
+                }
+
+                // Enter next level without renewing: an INode from an older generation is frozen and any modification
+                // has to replace this CNode first, hence it reflects the current state as of the time we read it
+                parent = in;
+                in = (INode<K, V>) sub;
+                lev += LEVEL_BITS;
+            } else if (m instanceof TNode<K, V> tn) {
+                // 3) non-live node
+                if (ct.isReadOnly() || in.gen != gen) {
+                    // read-only side does not clean up, nor can we clean up a frozen subtree
+                    return tn.sn.lookup(ct.equiv, hc, key);
+                }
+                // read-write: perform some clean up and restart
+                in.clean(ct, parent, lev);
+                return RESTART;
+            } else if (m instanceof LNode<K, V> ln) {
+                // 5) an l-node
+                return ln.entries.lookup(ct.equiv, key);
+            } else {
+                throw invalidElement(m);
             }
-            // read-write: perform some clean up and restart
+        }
+    }
+
+    @Nullable Object computeIfAbsent(final MutableTrieMap<K, V> ct, final Gen startGen, final int hc,
+            final @NonNull K key, final @NonNull Function<? super K, ? extends V> fn, final int lev,
+            final INode<K, V> parent) {
+        final var m = gcasRead(ct);
+        if (m instanceof CNode<K, V> cn) {
+            return cn.computeIfAbsent(ct, startGen, hc, key, fn, lev, this);
+        } else if (m instanceof TNode) {
             clean(ct, parent, lev);
             return RESTART;
         } else if (m instanceof LNode<K, V> ln) {
-            // 5) an l-node
-            return ln.entries.lookup(key);
+            return ln.entries.computeIfAbsent(ct, this, ln, key, fn);
         } else {
             throw invalidElement(m);
         }
     }
 
-    @Nullable Object computeIfAbsent(final MutableTrieMap<K, V> ct, final Gen startGen, final int hc,
-            final @NonNull K key, final @NonNull Function<? super K, ? extends V> fn, final int lev,
+    /**
+     * Computes a new mapping for the key, based on its current mapping, if any.
+     *
+     * @return RESTART if unsuccessful, the new value bound to the key otherwise
+     */
+    @Nullable Object compute(final MutableTrieMap<K, V> ct, final Gen startGen, final int hc,
+            final @NonNull K key, final @NonNull BiFunction<? super K, ? super V, ? extends V> fn, final int lev,
             final INode<K, V> parent) {
         final var m = gcasRead(ct);
         if (m instanceof CNode<K, V> cn) {
-            return cn.computeIfAbsent(ct, startGen, hc, key, fn, lev, this);
+            final var res = cn.compute(ct, startGen, hc, key, fn, lev, this);
+            if (res == null) {
+                // the mapping may have been removed
+                contractParent(ct, startGen, hc, parent, lev);
+            }
+            return res;
         } else if (m instanceof TNode) {
             clean(ct, parent, lev);
             return RESTART;
         } else if (m instanceof LNode<K, V> ln) {
-            return ln.entries.computeIfAbsent(ct, this, ln, key, fn);
+            return ln.entries.compute(ct, this, ln, key, fn, hc);
         } else {
             throw invalidElement(m);
         }
@@ -291,6 +431,148 @@ final class INode<K, V> implements Branch<K, V>, MutableTrieMap.Root<K, V> {
         }
     }
 
+    /**
+     * Inserts a range of a batch of entries, sorted by {@link CNode#prefixOrder(int)}. Entries which could not be
+     * inserted are added to {@code failed}, for the caller to retry.
+     */
+    void insertAll(final MutableTrieMap<K, V> ct, final Gen startGen, final SNode<K, V>[] batch, final int from,
+            final int to, final int lev, final INode<K, V> parent, final List<SNode<K, V>> failed) {
+        final var m = gcasRead(ct);
+        if (m instanceof CNode<K, V> cn) {
+            cn.insertAll(ct, startGen, batch, from, to, lev, this, failed);
+        } else if (m instanceof TNode) {
+            clean(ct, parent, lev);
+            failed.addAll(Arrays.asList(batch).subList(from, to));
+        } else if (m instanceof LNode<K, V> ln) {
+            if (!ln.entries.insertAll(ct, this, ln, batch, from, to)) {
+                failed.addAll(Arrays.asList(batch).subList(from, to));
+            }
+        } else {
+            throw invalidElement(m);
+        }
+    }
+
+    void replaceAll(final MutableTrieMap<K, V> ct, final Gen startGen,
+            final BiFunction<? super K, ? super V, ? extends V> fn, final int lev) {
+        while (true) {
+            final var m = gcasRead(ct);
+            if (m instanceof CNode<K, V> cn) {
+                final var next = cn.toReplaced(ct, startGen, fn, lev);
+                if (gcasWrite(ct, next)) {
+                    // Our SNodes are done, process INodes. If we ended up with a TNode, we are done.
+                    if (next instanceof CNode<K, V> ncn) {
+                        for (var branch : ncn.array) {
+                            if (branch instanceof INode<K, V> in) {
+                                in.replaceAll(ct, startGen, fn, lev + LEVEL_BITS);
+                            }
+                        }
+                    }
+                    return;
+                }
+            } else if (m instanceof TNode<K, V> tn) {
+                // We have been contracted after our parent was processed and this TNode is final. The entry lives on in
+                // the parent, but it has not been processed, hence replace it through the map.
+                ct.replaceEntry(tn.key(), tn.value(), fn);
+                return;
+            } else if (m instanceof LNode<K, V> ln) {
+                if (gcasWrite(ct, ln.entries.toReplaced(ln, fn))) {
+                    return;
+                }
+            } else {
+                throw invalidElement(m);
+            }
+
+            if (ct.readRoot().gen != startGen) {
+                // A snapshot has been taken, hence this subtree is frozen and we will never succeed in updating it.
+                // None of its entries have been processed, replace them through the map.
+                final var it = new ImmutableTrieMap<>(ct.options, this).immutableIterator();
+                while (it.hasNext()) {
+                    final var entry = it.next();
+                    ct.replaceEntry(entry.getKey(), entry.getValue(), fn);
+                }
+                return;
+            }
+        }
+    }
+
+    boolean removeAll(final MutableTrieMap<K, V> ct, final Gen startGen, final Predicate<? super Entry<K, V>> filter,
+            final int lev) {
+        boolean removed = false;
+        while (true) {
+            final var m = gcasRead(ct);
+            final MainNode<K, V> next;
+            final int delta;
+            boolean renew = false;
+            if (m instanceof CNode<K, V> cn) {
+                final var rn = cn.toRenewed(ct, startGen);
+                if (rn != cn) {
+                    // Make sure all INodes are in our generation before we process them
+                    next = rn;
+                    delta = 0;
+                    renew = true;
+                } else {
+                    // Process INodes first, so that any TNodes they leave behind get resurrected and contracted here
+                    for (var branch : cn.array) {
+                        if (branch instanceof INode<K, V> in) {
+                            removed |= in.removeAll(ct, startGen, filter, lev + LEVEL_BITS);
+                        }
+                    }
+                    next = cn.toFiltered(ct, startGen, filter, lev);
+                    // Each slot holds either a single entry, or an INode accounting for its own entries. The result
+                    // holds fewer slots, or is a TNode holding a single entry.
+                    delta = (next instanceof CNode<K, V> filtered ? filtered.array.length : 1) - cn.array.length;
+                }
+            } else if (m instanceof TNode) {
+                // We have been contracted and this TNode is final. The entry lives on in the parent, which will process
+                // it after we return.
+                return removed;
+            } else if (m instanceof LNode<K, V> ln) {
+                next = ln.entries.toFiltered(ct, ln, filter);
+                delta = (next instanceof LNode<K, V> filtered ? filtered.size : 1) - ln.size;
+            } else {
+                throw invalidElement(m);
+            }
+
+            if (next == null) {
+                // nothing to remove
+                return removed;
+            }
+            if (gcasWrite(ct, next, delta)) {
+                if (!renew) {
+                    return true;
+                }
+            } else if (ct.readRoot().gen != startGen) {
+                // A snapshot has been taken, hence this subtree is frozen and we will never succeed in updating it.
+                // Remove any remaining entries through the map.
+                final var it = new ImmutableTrieMap<>(ct.options, this).immutableIterator();
+                while (it.hasNext()) {
+                    final var entry = it.next();
+                    if (filter.test(entry)) {
+                        removed |= ct.remove(entry.getKey(), entry.getValue());
+                    }
+                }
+                return removed;
+            }
+        }
+    }
+
+    // Locate the INode whose main node holds the slot for a particular hash, renewing the path as needed. Returns
+    // either a McasDescriptor.Location or RESTART.
+    Object locate(final MutableTrieMap<K, V> ct, final Gen startGen, final int hc, final int lev,
+            final @Nullable INode<K, V> parent) {
+        final var m = gcasRead(ct);
+        if (m instanceof CNode<K, V> cn) {
+            return cn.locate(ct, startGen, hc, lev, this, parent);
+        } else if (m instanceof TNode) {
+            clean(ct, VerifyException.throwIfNull(parent), lev);
+            return RESTART;
+        } else if (m instanceof LNode) {
+            return new McasDescriptor.Location<>(this, parent, lev);
+        } else {
+            throw invalidElement(m);
+        }
+    }
+
     /**
      * Inserts a new key value pair, given that a specific condition is met.
      *
@@ -331,9 +613,8 @@ final class INode<K, V> implements Branch<K, V>, MutableTrieMap.Root<K, V> {
         final var m = gcasRead(ct);
         if (m instanceof CNode<K, V> cn) {
             final var res = cn.remove(ct, startGen, hc, key, cond, lev, this);
-            // never tomb at root
-            if (res != null && res != RESTART && parent != null && parent.gcasRead(ct) instanceof TNode<K, V> tn) {
-                cleanParent(ct, startGen, hc, tn, parent, lev);
+            if (res != null && res != RESTART) {
+                contractParent(ct, startGen, hc, parent, lev);
             }
             return res;
         } else if (m instanceof TNode) {
@@ -346,6 +627,29 @@ final class INode<K, V> implements Branch<K, V>, MutableTrieMap.Root<K, V> {
         }
     }
 
+    // Compact the subtree rooted at this INode bottom-up: tombed INodes are resurrected into their parents, which may
+    // in turn end up being contracted and resurrected into their parents, all the way up. Subtrees which are not in
+    // startGen are left alone: they are shared with a snapshot, hence rewriting them would not reclaim anything.
+    void compact(final MutableTrieMap<K, V> ct, final Gen startGen, final int lev) {
+        while (true) {
+            if (!(gcasRead(ct) instanceof CNode<K, V> cn)) {
+                // TNodes are resurrected by our parent, LNodes hold at least two entries
+                return;
+            }
+
+            for (var branch : cn.array) {
+                if (branch instanceof INode<K, V> in && in.gen == startGen) {
+                    in.compact(ct, startGen, lev + LEVEL_BITS);
+                }
+            }
+
+            final var next = cn.toCompacted(ct, gen, lev);
+            if (next == null || gcasWrite(ct, next) || ct.readRoot().gen != startGen) {
+                return;
+            }
+        }
+    }
+
     private void clean(final TrieMap<K, V> ct, final INode<K, V> parent, final int lev) {
         if (parent.gcasRead(ct) instanceof CNode<K, V> cn) {
             parent.gcasWrite(ct, cn.toCompressed(ct, gen, lev - LEVEL_BITS));
@@ -355,7 +659,16 @@ final class INode<K, V> implements Branch<K, V>, MutableTrieMap.Root<K, V> {
     // gcasRead() and if it is a TNode convert it to an SNode instead. Called indirectly via cn.toCompressed() from
     // clean() just above
     Branch<K, V> resurrect(final TrieMap<K, V> ct) {
-        return gcasReadNonNull(ct) instanceof TNode<K, V> tn ? new SNode<>(tn) : this;
+        return gcasReadNonNull(ct) instanceof TNode<K, V> tn ? tn.sn : this;
+    }
+
+    // if a removal has left us with a TNode, try to contract it into our parent
+    private void contractParent(final MutableTrieMap<K, V> ct, final Gen startGen, final int hc,
+            final INode<K, V> parent, final int lev) {
+        // never tomb at root
+        if (parent != null && gcasRead(ct) instanceof TNode<K, V> tn) {
+            cleanParent(ct, startGen, hc, tn, parent, lev);
+        }
     }
 
     private void cleanParent(final MutableTrieMap<K, V> ct, final Gen startGen, final int hc, final TNode<K, V> tn,
@@ -366,7 +679,7 @@ final class INode<K, V> implements Branch<K, V>, MutableTrieMap.Root<K, V> {
                 return;
             }
 
-            final int idx = hc >>> lev - LEVEL_BITS & 0x1f;
+            final int idx = hc >>> lev - LEVEL_BITS & LEVEL_MASK;
             final int bmp = cn.bitmap;
             final int flag = 1 << idx;
             if ((bmp & flag) == 0) {
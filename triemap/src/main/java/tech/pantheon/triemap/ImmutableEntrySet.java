@@ -23,15 +23,16 @@ import java.util.Spliterator;
 import java.util.function.Predicate;
 
 /**
- * {@link AbstractEntrySet} implementation guarding against attempts to mutate the underlying map.
+ * {@link AbstractEntrySet} implementation guarding against attempts to mutate the underlying map. If the underlying map
+ * is a {@link MutableTrieMap}, this is a weakly consistent read-only view of it.
  *
  * @author Robert Varga
  *
  * @param <K> the type of entry keys
  * @param <V> the type of entry values
  */
-final class ImmutableEntrySet<K, V> extends AbstractEntrySet<K, V, ImmutableTrieMap<K, V>> {
-    ImmutableEntrySet(final ImmutableTrieMap<K, V> map) {
+final class ImmutableEntrySet<K, V> extends AbstractEntrySet<K, V, TrieMap<K, V>> {
+    ImmutableEntrySet(final TrieMap<K, V> map) {
         super(map);
     }
 
@@ -68,8 +69,14 @@ final class ImmutableEntrySet<K, V> extends AbstractEntrySet<K, V, ImmutableTrie
         throw unsupported();
     }
 
+    @Override
+    ImmutableIterator<K, V> rangeIterator(final Branch<K, V>[] array, final int from, final int to) {
+        return map.immutableIterator(array, from, to);
+    }
+
     @Override
     int characteristics() {
-        return Spliterator.DISTINCT | Spliterator.IMMUTABLE | Spliterator.NONNULL;
+        return Spliterator.DISTINCT | Spliterator.NONNULL
+            | (map.isReadOnly() ? Spliterator.IMMUTABLE : Spliterator.CONCURRENT);
     }
 }
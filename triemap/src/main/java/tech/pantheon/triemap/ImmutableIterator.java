@@ -24,8 +24,12 @@ package tech.pantheon.triemap;
  * @param <V> the type of entry values
  */
 final class ImmutableIterator<K, V> extends AbstractIterator<K, V> {
-    ImmutableIterator(final ImmutableTrieMap<K, V> map) {
-        super(map);
+    ImmutableIterator(final TrieMap<K, V> map, final INode<K, V> root) {
+        super(map, root);
+    }
+
+    ImmutableIterator(final TrieMap<K, V> map, final Branch<K, V>[] array, final int from, final int to) {
+        super(map, array, from, to);
     }
 
     @Override
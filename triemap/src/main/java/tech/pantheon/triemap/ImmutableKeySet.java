@@ -22,14 +22,15 @@ import java.util.Spliterator;
 import java.util.function.Predicate;
 
 /**
- * An immutable view of a TrieMap's key set.
+ * An immutable view of a TrieMap's key set. If the underlying map is a {@link MutableTrieMap}, this is a weakly
+ * consistent read-only view of it.
  *
  * @author Robert Varga
  *
  * @param <K> the type of keys
  */
-final class ImmutableKeySet<K> extends AbstractKeySet<K, ImmutableTrieMap<K, ?>> {
-    ImmutableKeySet(final ImmutableTrieMap<K, ?> map) {
+final class ImmutableKeySet<K> extends AbstractKeySet<K, TrieMap<K, ?>> {
+    ImmutableKeySet(final TrieMap<K, ?> map) {
         super(map);
     }
 
@@ -68,6 +69,7 @@ final class ImmutableKeySet<K> extends AbstractKeySet<K, ImmutableTrieMap<K, ?>>
 
     @Override
     int spliteratorCharacteristics() {
-        return Spliterator.DISTINCT | Spliterator.IMMUTABLE | Spliterator.NONNULL;
+        return Spliterator.DISTINCT | Spliterator.NONNULL
+            | (map.isReadOnly() ? Spliterator.IMMUTABLE : Spliterator.CONCURRENT);
     }
 }
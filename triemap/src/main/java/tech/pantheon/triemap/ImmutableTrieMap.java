@@ -37,7 +37,8 @@ public final class ImmutableTrieMap<K, V> extends TrieMap<K, V> {
     @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "Handled through writeReplace")
     private final transient INode<K, V> root;
 
-    ImmutableTrieMap(final INode<K, V> root) {
+    ImmutableTrieMap(final Options<K> options, final INode<K, V> root) {
+        super(options);
         this.root = requireNonNull(root);
     }
 
@@ -107,9 +108,14 @@ public final class ImmutableTrieMap<K, V> extends TrieMap<K, V> {
         return root.elementSize(this);
     }
 
+    @Override
+    public long mappingCount() {
+        return size();
+    }
+
     @Override
     public MutableTrieMap<K, V> mutableSnapshot() {
-        return new MutableTrieMap<>(root.copyToGen(this, new Gen()));
+        return new MutableTrieMap<>(options, root.copyToGen(this, new Gen(new EntryCounter(this))));
     }
 
     @Override
@@ -132,16 +138,36 @@ public final class ImmutableTrieMap<K, V> extends TrieMap<K, V> {
         return true;
     }
 
+    @Override
+    ImmutableTrieMap<K, V> currentSnapshot() {
+        return this;
+    }
+
     @Override
     ImmutableIterator<K, V> iterator() {
         return immutableIterator();
     }
 
+    @Override
+    ImmutableIterator<K, V> iterator(final Branch<K, V>[] array, final int from, final int to) {
+        return immutableIterator(array, from, to);
+    }
+
     @Override
     INode<K, V> rdcssReadRoot(final boolean abort) {
         return root;
     }
 
+    @Override
+    void restart(final int restarts) {
+        throw new VerifyException("Read-only map should never restart");
+    }
+
+    @Override
+    void removed(final int count) {
+        throw new VerifyException("Read-only map should never be modified");
+    }
+
     static UnsupportedOperationException unsupported() {
         return new UnsupportedOperationException("Attempted to modify a read-only view");
     }
@@ -16,13 +16,13 @@
 package tech.pantheon.triemap;
 
 final class LNode<K, V> extends MainNode<K, V> {
-    // Internally-linked single list of of entries
+    // Entries, either in a single-linked list or in a tree
     final LNodeEntries<K, V> entries;
     final int size;
 
     LNode(final LNode<K, V> prev, final LNodeEntries<K, V> entries, final int size) {
         super(prev);
-        this.entries = entries;
+        this.entries = entries.forSize(size);
         this.size = size;
     }
 
@@ -31,6 +31,11 @@ final class LNode<K, V> extends MainNode<K, V> {
         size = 2;
     }
 
+    LNode(final SNode<K, V>[] batch, final int from, final int to) {
+        size = to - from;
+        entries = LNodeEntries.of(batch, from, to).forSize(size);
+    }
+
     @Override
     int trySize() {
         return size;
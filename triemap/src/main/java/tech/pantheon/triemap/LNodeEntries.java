@@ -15,100 +15,568 @@
  */
 package tech.pantheon.triemap;
 
+import static java.util.Objects.requireNonNull;
 import static tech.pantheon.triemap.PresencePredicate.ABSENT;
 import static tech.pantheon.triemap.PresencePredicate.PRESENT;
 import static tech.pantheon.triemap.Result.RESTART;
 
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 
 /**
- * Similar to Scala&apos;s ListMap, this is a single-linked list of set of map entries. Aside from the java.util.Set
- * contract, this class fulfills the requirements for an immutable map entryset.
+ * A set of map entries with colliding hashes. Aside from the java.util.Set contract, this class fulfills the
+ * requirements for an immutable map entryset.
+ *
+ * <p>Entries are normally kept in a {@link Chain}, which is similar to Scala&apos;s ListMap, i.e. a single-linked list.
+ * Once a chain reaches {@link #TREEIFY_THRESHOLD} entries and all their keys are of the same class, which is
+ * {@link Comparable} to itself, it is converted to a {@link Tree}, a persistent AVL tree ordered by
+ * {@link Comparable#compareTo(Object)}. This bounds the cost of operations on keys with colliding hashes to
+ * {@code O(log n)}, similar to {@link java.util.concurrent.ConcurrentHashMap}'s TreeBins.
  *
  * @author Robert Varga
  *
  * @param <K> the type of keys
  * @param <V> the type of values
  */
-abstract sealed class LNodeEntries<K, V> extends LNodeEntry<K, V> {
+abstract sealed class LNodeEntries<K, V> extends LNodeEntry<K, V> implements Iterable<LNodeEntry<K, V>> {
+    /**
+     * A single-linked list of entries.
+     */
+    abstract static sealed class Chain<K, V> extends LNodeEntries<K, V> {
+        Chain(final @NonNull K key, final @NonNull V value) {
+            super(key, value);
+        }
+
+        /**
+         * Return the remainder of this list. Useful for implementing Iterator-like contract. Null indicates there are
+         * no more entries.
+         *
+         * @return Remainder of this list, or null if nothing remains
+         */
+        abstract Chain<K, V> next();
+
+        @Override
+        public final Iterator<LNodeEntry<K, V>> iterator() {
+            return new Iterator<>() {
+                private Chain<K, V> next = Chain.this;
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public LNodeEntry<K, V> next() {
+                    final var ret = next;
+                    if (ret == null) {
+                        throw new NoSuchElementException();
+                    }
+                    next = ret.next();
+                    return ret;
+                }
+            };
+        }
+
+        @Override
+        final LNodeEntries<K, V> forSize(final int size) {
+            if (size < TREEIFY_THRESHOLD) {
+                return this;
+            }
+
+            final var type = key().getClass();
+            if (!SELF_COMPARABLE.get(type)) {
+                return this;
+            }
+            Tree<K, V> root = null;
+            for (var entry = this; entry != null; entry = entry.next()) {
+                final var key = entry.key();
+                if (key.getClass() != type) {
+                    return this;
+                }
+                root = Tree.insert(root, key, entry.value());
+                if (root == null) {
+                    // compareTo() is not consistent with equals()
+                    return this;
+                }
+            }
+            return root;
+        }
+
+        @Override
+        final Chain<K, V> replace(final LNodeEntry<K, V> entry, final @NonNull V value) {
+            return prepend(removeEntry(entry), entry.key(), value);
+        }
+
+        @Override
+        final @Nullable LNodeEntry<K, V> findEntry(final Equivalence<? super K> equiv, final @NonNull K key) {
+            // We do not perform recursion on purpose here, so we do not run out of stack if the key hashing fails.
+            var entry = this;
+            do {
+                if (equiv.equivalent(key, entry.key())) {
+                    return entry;
+                }
+
+                entry = entry.next();
+            } while (entry != null);
+
+            return null;
+        }
+
+        @Override
+        final Chain<K, V> insertEntry(final @NonNull K key, final @NonNull V value) {
+            return new Multiple<>(key, value, this);
+        }
+
+        @Override
+        final @Nullable Chain<K, V> removeEntry(final LNodeEntry<K, V> entry) {
+            if (entry == this) {
+                return next();
+            }
+
+            // This will result in a list with a long tail, i.e last entry storing explicit null. Overhead is amortized
+            // against the number of entries. We do not retain chains shorter than two, so the worst-case overhead is
+            // half-a-reference for an entry.
+            final var ret = new Multiple<>(this);
+
+            var last = ret;
+            var cur = next();
+            while (cur != null) {
+                // We cannot use equals() here, as it is wired to key equality and we must never compare entries based
+                // on that property. This method is intended to remove a known reference, so identity is what we want.
+                if (entry == cur) {
+                    last.next = cur.next();
+                    return ret;
+                }
+
+                final var tmp = new Multiple<>(cur);
+                last.next = tmp;
+                last = tmp;
+                cur = cur.next();
+            }
+
+            throw new VerifyException("Failed to find entry " + entry);
+        }
+    }
+
     // Visible for testing
-    static final class Single<K, V> extends LNodeEntries<K, V> {
+    static final class Single<K, V> extends Chain<K, V> {
         Single(final @NonNull K key, final @NonNull V value) {
             super(key, value);
         }
 
         @Override
-        LNodeEntries<K, V> next() {
+        Chain<K, V> next() {
             return null;
         }
     }
 
-    private static final class Multiple<K, V> extends LNodeEntries<K, V> {
+    private static final class Multiple<K, V> extends Chain<K, V> {
         // Modified during remove only, otherwise final
-        LNodeEntries<K, V> next;
+        Chain<K, V> next;
 
         // Used in remove() only
-        Multiple(final LNodeEntries<K, V> entry) {
+        Multiple(final Chain<K, V> entry) {
             this(entry.key(), entry.value(), null);
         }
 
-        Multiple(final @NonNull K key, final @NonNull V value, final LNodeEntries<K, V> next) {
+        Multiple(final @NonNull K key, final @NonNull V value, final Chain<K, V> next) {
             super(key, value);
             this.next = next;
         }
 
         @Override
-        LNodeEntries<K, V> next() {
+        Chain<K, V> next() {
             return next;
         }
     }
 
+    /**
+     * A node of a persistent AVL tree of entries. All keys are of the same class and are distinct with regard to their
+     * {@link Comparable#compareTo(Object)}.
+     */
+    static final class Tree<K, V> extends LNodeEntries<K, V> {
+        private final @Nullable Tree<K, V> left;
+        private final @Nullable Tree<K, V> right;
+        private final int height;
+
+        private Tree(final @NonNull K key, final @NonNull V value, final @Nullable Tree<K, V> left,
+                final @Nullable Tree<K, V> right, final int height) {
+            super(key, value);
+            this.left = left;
+            this.right = right;
+            this.height = height;
+        }
+
+        private static <K, V> Tree<K, V> of(final @NonNull K key, final @NonNull V value,
+                final @Nullable Tree<K, V> left, final @Nullable Tree<K, V> right) {
+            return new Tree<>(key, value, left, right, Math.max(height(left), height(right)) + 1);
+        }
+
+        @Override
+        public Iterator<LNodeEntry<K, V>> iterator() {
+            return new Iterator<>() {
+                private final ArrayDeque<Tree<K, V>> stack = new ArrayDeque<>();
+
+                {
+                    pushLeft(Tree.this);
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return !stack.isEmpty();
+                }
+
+                @Override
+                public LNodeEntry<K, V> next() {
+                    final var ret = stack.poll();
+                    if (ret == null) {
+                        throw new NoSuchElementException();
+                    }
+                    pushLeft(ret.right);
+                    return ret;
+                }
+
+                private void pushLeft(final @Nullable Tree<K, V> node) {
+                    for (var cur = node; cur != null; cur = cur.left) {
+                        stack.push(cur);
+                    }
+                }
+            };
+        }
+
+        @Override
+        LNodeEntries<K, V> forSize(final int size) {
+            return size > UNTREEIFY_THRESHOLD ? this : toChain(null, null);
+        }
+
+        @Override
+        @Nullable LNodeEntry<K, V> findEntry(final Equivalence<? super K> equiv, final @NonNull K key) {
+            if (equiv.consistentWithOrdering() && key.getClass() == key().getClass()) {
+                var node = this;
+                do {
+                    final int cmp = compare(key, node.key());
+                    if (cmp == 0) {
+                        if (equiv.equivalent(key, node.key())) {
+                            return node;
+                        }
+                        // compareTo() is not consistent with equivalence, fall back to a full scan
+                        break;
+                    }
+                    node = cmp < 0 ? node.left : node.right;
+                } while (node != null);
+
+                if (node == null) {
+                    return null;
+                }
+            }
+
+            // The key may still be equivalent to one of ours
+            for (var entry : this) {
+                if (equiv.equivalent(key, entry.key())) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        LNodeEntries<K, V> insertEntry(final @NonNull K key, final @NonNull V value) {
+            if (key.getClass() == key().getClass()) {
+                final var ret = insert(this, key, value);
+                if (ret != null) {
+                    return ret;
+                }
+            }
+            // The key cannot be placed into this tree, fall back to a chain
+            return toChain(null, null).insertEntry(key, value);
+        }
+
+        @Override
+        @Nullable LNodeEntries<K, V> removeEntry(final LNodeEntry<K, V> entry) {
+            return holds(entry) ? remove(this, entry.key()) : toChain(entry, null);
+        }
+
+        @Override
+        LNodeEntries<K, V> replace(final LNodeEntry<K, V> entry, final @NonNull V value) {
+            return holds(entry) ? withValue(this, entry.key(), value)
+                : VerifyException.throwIfNull(toChain(entry, value));
+        }
+
+        // Check whether an entry is reachable through comparisons
+        private boolean holds(final LNodeEntry<K, V> entry) {
+            final var key = entry.key();
+            if (key.getClass() != key().getClass()) {
+                return false;
+            }
+
+            var node = this;
+            do {
+                final int cmp = compare(key, node.key());
+                if (cmp == 0) {
+                    return node == entry;
+                }
+                node = cmp < 0 ? node.left : node.right;
+            } while (node != null);
+            return false;
+        }
+
+        // Copy this tree into a chain, optionally replacing or removing (if value is null) an entry
+        private @Nullable Chain<K, V> toChain(final @Nullable LNodeEntry<K, V> entry, final @Nullable V value) {
+            Chain<K, V> ret = null;
+            boolean found = entry == null;
+            for (var cur : this) {
+                if (cur != entry) {
+                    ret = prepend(ret, cur.key(), cur.value());
+                } else {
+                    found = true;
+                    if (value != null) {
+                        ret = prepend(ret, cur.key(), value);
+                    }
+                }
+            }
+            if (!found) {
+                throw new VerifyException("Failed to find entry " + entry);
+            }
+            return ret;
+        }
+
+        // Returns null if the key compares as equal to a key already present
+        static <K, V> @Nullable Tree<K, V> insert(final @Nullable Tree<K, V> node, final @NonNull K key,
+                final @NonNull V value) {
+            if (node == null) {
+                return new Tree<>(key, value, null, null, 1);
+            }
+
+            final int cmp = compare(key, node.key());
+            if (cmp < 0) {
+                final var left = insert(node.left, key, value);
+                return left == null ? null : balance(node.key(), node.value(), left, node.right);
+            } else if (cmp > 0) {
+                final var right = insert(node.right, key, value);
+                return right == null ? null : balance(node.key(), node.value(), node.left, right);
+            } else {
+                return null;
+            }
+        }
+
+        private static <K, V> @Nullable Tree<K, V> remove(final Tree<K, V> node, final @NonNull K key) {
+            final int cmp = compare(key, node.key());
+            if (cmp < 0) {
+                return balance(node.key(), node.value(), remove(VerifyException.throwIfNull(node.left), key),
+                    node.right);
+            } else if (cmp > 0) {
+                return balance(node.key(), node.value(), node.left,
+                    remove(VerifyException.throwIfNull(node.right), key));
+            }
+
+            final var left = node.left;
+            final var right = node.right;
+            if (left == null) {
+                return right;
+            } else if (right == null) {
+                return left;
+            }
+
+            var min = right;
+            for (var cur = min.left; cur != null; cur = cur.left) {
+                min = cur;
+            }
+            return balance(min.key(), min.value(), left, removeMin(right));
+        }
+
+        private static <K, V> @Nullable Tree<K, V> removeMin(final Tree<K, V> node) {
+            final var left = node.left;
+            return left == null ? node.right : balance(node.key(), node.value(), removeMin(left), node.right);
+        }
+
+        private static <K, V> Tree<K, V> withValue(final Tree<K, V> node, final @NonNull K key,
+                final @NonNull V value) {
+            final int cmp = compare(key, node.key());
+            if (cmp < 0) {
+                return new Tree<>(node.key(), node.value(),
+                    withValue(VerifyException.throwIfNull(node.left), key, value), node.right, node.height);
+            } else if (cmp > 0) {
+                return new Tree<>(node.key(), node.value(), node.left,
+                    withValue(VerifyException.throwIfNull(node.right), key, value), node.height);
+            } else {
+                return new Tree<>(node.key(), value, node.left, node.right, node.height);
+            }
+        }
+
+        private static <K, V> Tree<K, V> balance(final @NonNull K key, final @NonNull V value,
+                final @Nullable Tree<K, V> left, final @Nullable Tree<K, V> right) {
+            final int leftHeight = height(left);
+            final int rightHeight = height(right);
+            if (leftHeight > rightHeight + 1) {
+                final var node = VerifyException.throwIfNull(left);
+                final var inner = node.right;
+                if (inner == null || height(node.left) >= inner.height) {
+                    return of(node.key(), node.value(), node.left, of(key, value, inner, right));
+                }
+                return of(inner.key(), inner.value(), of(node.key(), node.value(), node.left, inner.left),
+                    of(key, value, inner.right, right));
+            } else if (rightHeight > leftHeight + 1) {
+                final var node = VerifyException.throwIfNull(right);
+                final var inner = node.left;
+                if (inner == null || height(node.right) >= inner.height) {
+                    return of(node.key(), node.value(), of(key, value, left, inner), node.right);
+                }
+                return of(inner.key(), inner.value(), of(key, value, left, inner.left),
+                    of(node.key(), node.value(), inner.right, node.right));
+            }
+            return of(key, value, left, right);
+        }
+
+        private static int height(final @Nullable Tree<?, ?> node) {
+            return node == null ? 0 : node.height;
+        }
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        private static int compare(final Object first, final Object second) {
+            return ((Comparable) first).compareTo(second);
+        }
+    }
+
+    /**
+     * The number of entries at which a {@link Chain} is converted to a {@link Tree}.
+     */
+    static final int TREEIFY_THRESHOLD = 8;
+    /**
+     * The number of entries at which a {@link Tree} is converted back to a {@link Chain}.
+     */
+    static final int UNTREEIFY_THRESHOLD = 6;
+
+    // Classes C implementing Comparable<C>, same as ConcurrentHashMap.comparableClassFor()
+    private static final ClassValue<Boolean> SELF_COMPARABLE = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(final Class<?> type) {
+            if (type == String.class) {
+                return Boolean.TRUE;
+            }
+            for (var iface : type.getGenericInterfaces()) {
+                if (iface instanceof ParameterizedType param && param.getRawType() == Comparable.class) {
+                    final var args = param.getActualTypeArguments();
+                    if (args.length == 1 && args[0] == type) {
+                        return Boolean.TRUE;
+                    }
+                }
+            }
+            return Boolean.FALSE;
+        }
+    };
+
     LNodeEntries(final @NonNull K key, final @NonNull V value) {
         super(key, value);
     }
 
-    static <K,V> LNodeEntries<K, V> of(final @NonNull K k1, final @NonNull V v1,
-            final @NonNull K k2, final @NonNull V v2) {
+    static <K,V> Chain<K, V> of(final @NonNull K k1, final @NonNull V v1, final @NonNull K k2, final @NonNull V v2) {
         return new Multiple<>(k1, v1, new Single<>(k2, v2));
     }
 
+    static <K,V> Chain<K, V> of(final SNode<K, V>[] batch, final int from, final int to) {
+        final var last = batch[to - 1];
+        Chain<K, V> ret = new Single<>(last.key(), last.value());
+        for (int i = to - 2; i >= from; i--) {
+            final var sn = batch[i];
+            ret = new Multiple<>(sn.key(), sn.value(), ret);
+        }
+        return ret;
+    }
+
+    private static <K, V> Chain<K, V> prepend(final @Nullable Chain<K, V> chain, final @NonNull K key,
+            final @NonNull V value) {
+        return chain == null ? new Single<>(key, value) : new Multiple<>(key, value, chain);
+    }
+
     /**
-     * Return the remainder of this list. Useful for implementing Iterator-like contract. Null indicates there are no
-     * more entries.
+     * Return the representation of these entries best suited for specified number of entries.
      *
-     * @return Remainder of this list, or null if nothing remains
+     * @param size Number of entries
+     * @return Either this object, or a {@link Chain} or a {@link Tree} holding the same entries
      */
-    abstract LNodeEntries<K, V> next();
+    abstract LNodeEntries<K, V> forSize(int size);
+
+    // Visible for testing
+    abstract @Nullable LNodeEntry<K, V> findEntry(Equivalence<? super K> equiv, @NonNull K key);
+
+    // Visible for testing
+    abstract LNodeEntries<K, V> insertEntry(@NonNull K key, @NonNull V value);
+
+    // Visible for testing
+    abstract @Nullable LNodeEntries<K, V> removeEntry(LNodeEntry<K, V> entry);
+
+    // Visible for testing
+    abstract LNodeEntries<K, V> replace(LNodeEntry<K, V> entry, @NonNull V value);
 
-    final @Nullable V lookup(final @NonNull K key) {
-        final var entry = findEntry(key);
+    final @Nullable V lookup(final Equivalence<? super K> equiv, final @NonNull K key) {
+        final var entry = findEntry(equiv, key);
         return entry != null ? entry.value() : null;
     }
 
     @Nullable Object computeIfAbsent(final MutableTrieMap<K, V> ct, final INode<K, V> in, final LNode<K, V> ln,
             final @NonNull K key, final @NonNull Function<? super K, ? extends V> fn) {
-        final var entry = findEntry(key);
+        final var entry = findEntry(ct.equiv, key);
         if (entry != null) {
             return entry.value();
         }
 
         final var val = fn.apply(key);
-        return val == null || in.gcasWrite(ct, toInserted(ln, key, val)) ? val : RESTART;
+        return val == null || in.gcasWrite(ct, toInserted(ln, key, val), 1) ? val : RESTART;
+    }
+
+    @Nullable Object compute(final MutableTrieMap<K, V> ct, final INode<K, V> in, final LNode<K, V> ln,
+            final @NonNull K key, final @NonNull BiFunction<? super K, ? super V, ? extends V> fn, final int hc) {
+        final var entry = findEntry(ct.equiv, key);
+        if (entry == null) {
+            final var val = fn.apply(key, null);
+            return val == null || in.gcasWrite(ct, toInserted(ln, key, val), 1) ? val : RESTART;
+        }
+
+        final var val = fn.apply(key, entry.value());
+        if (val == null) {
+            return in.gcasWrite(ct, toRemoved(ln, entry, hc), -1) ? null : RESTART;
+        }
+        return in.gcasWrite(ct, toReplaced(ln, entry, val)) ? val : RESTART;
     }
 
     final boolean insert(final MutableTrieMap<K, V> ct, final INode<K, V> in, final LNode<K, V> ln,
             final @NonNull K key, final @NonNull V val) {
-        final var entry = findEntry(key);
-        return in.gcasWrite(ct, entry == null ? toInserted(ln, key, val) : toReplaced(ln, entry, val));
+        final var entry = findEntry(ct.equiv, key);
+        return entry == null ? in.gcasWrite(ct, toInserted(ln, key, val), 1)
+            : in.gcasWrite(ct, toReplaced(ln, entry, val));
+    }
+
+    final boolean insertAll(final MutableTrieMap<K, V> ct, final INode<K, V> in, final LNode<K, V> ln,
+            final SNode<K, V>[] batch, final int from, final int to) {
+        LNodeEntries<K, V> map = this;
+        int size = ln.size;
+        for (int i = from; i < to; i++) {
+            final var sn = batch[i];
+            final var entry = map.findEntry(ct.equiv, sn.key());
+            if (entry == null) {
+                // Switch representation as we go, so a large batch does not end up scanning a long chain
+                map = map.insertEntry(sn.key(), sn.value()).forSize(++size);
+            } else {
+                map = map.replace(entry, sn.value());
+            }
+        }
+        return in.gcasWrite(ct, new LNode<>(ln, map, size), size - ln.size);
     }
 
     @Nullable Object insertIf(final MutableTrieMap<K, V> ct, final INode<K, V> in, final LNode<K, V> ln,
             final @NonNull K key, final @NonNull V val, final Object cond) {
-        final var entry = findEntry(key);
+        final var entry = findEntry(ct.equiv, key);
         if (entry == null) {
-            return cond != null && cond != ABSENT || in.gcasWrite(ct, toInserted(ln, key, val)) ? null : RESTART;
+            return cond != null && cond != ABSENT || in.gcasWrite(ct, toInserted(ln, key, val), 1) ? null : RESTART;
         }
         if (cond == ABSENT) {
             return entry.value();
@@ -120,7 +588,7 @@ abstract sealed class LNodeEntries<K, V> extends LNodeEntry<K, V> {
 
     @Nullable Object remove(final MutableTrieMap<K, V> ct, final INode<K, V> in, final LNode<K, V> ln,
             final @NonNull K key, final @Nullable Object cond, final int hc) {
-        final var entry = findEntry(key);
+        final var entry = findEntry(ct.equiv, key);
         if (entry == null) {
             // Key was not found, hence no modification is needed
             return null;
@@ -130,6 +598,63 @@ abstract sealed class LNodeEntries<K, V> extends LNodeEntry<K, V> {
             return null;
         }
 
+        return in.gcasWrite(ct, toRemoved(ln, entry, hc), -1) ? entry.value() : RESTART;
+    }
+
+    // Returns a copy of the LNode with specified changes applied, or null if it would end up being empty
+    @Nullable MainNode<K, V> toChanged(final Equivalence<? super K> equiv, final LNode<K, V> ln,
+            final List<McasDescriptor.Change<K, V>> changes) {
+        LNodeEntries<K, V> map = this;
+        int size = ln.size;
+        for (var change : changes) {
+            final var key = change.key();
+            final var entry = map == null ? null : map.findEntry(equiv, key);
+            if (entry != null) {
+                map = map.removeEntry(entry);
+                size--;
+            }
+            final var update = change.update();
+            if (update != null) {
+                map = map == null ? new Single<>(key, update) : map.insertEntry(key, update);
+                size++;
+            }
+        }
+
+        return switch (size) {
+            case 0 -> null;
+            case 1 -> new TNode<>(ln, map.key(), map.value(), changes.get(0).hc());
+            default -> new LNode<>(ln, map, size);
+        };
+    }
+
+    // Returns a copy of the LNode with all entries matching the filter removed, or null if there is nothing to remove
+    @Nullable MainNode<K, V> toFiltered(final TrieMap<K, V> ct, final LNode<K, V> ln,
+            final Predicate<? super Entry<K, V>> filter) {
+        Chain<K, V> map = null;
+        LNodeEntry<K, V> last = null;
+        int size = 0;
+        for (var entry : this) {
+            if (filter.test(entry)) {
+                last = entry;
+            } else {
+                map = prepend(map, entry.key(), entry.value());
+                size++;
+            }
+        }
+
+        if (last == null) {
+            return null;
+        }
+        // An LNode needs at least two entries. If we would end up with none, we leave the last entry tombed, so that
+        // our parent removes it when it resurrects it.
+        return switch (size) {
+            case 0 -> new TNode<>(ln, last.key(), last.value(), ct.hash(last.key()));
+            case 1 -> new TNode<>(ln, map.key(), map.value(), ct.hash(map.key()));
+            default -> new LNode<>(ln, map, size);
+        };
+    }
+
+    private MainNode<K, V> toRemoved(final LNode<K, V> ln, final LNodeEntry<K, V> entry, final int hc) {
         // While remove() can return null, that case will never happen here, as we are starting off with two entries
         // so we cannot observe a null return here.
         final var map = VerifyException.throwIfNull(removeEntry(entry));
@@ -137,72 +662,24 @@ abstract sealed class LNodeEntries<K, V> extends LNodeEntry<K, V> {
         // If the returned LNode would have only one element, we turn it intoa TNode, so it can be turned into SNode on
         // next lookup
         final var size = ln.size;
-        final var next = size == 2 ? new TNode<>(ln, map.key(), map.value(), hc) : new LNode<>(ln, map, size - 1);
-
-        return in.gcasWrite(ct, next) ? entry.value() : RESTART;
+        return size == 2 ? new TNode<>(ln, map.key(), map.value(), hc) : new LNode<>(ln, map, size - 1);
     }
 
     private LNode<K, V> toInserted(final LNode<K, V> ln, final @NonNull K key, final @NonNull V val) {
         return new LNode<>(ln, insertEntry(key, val), ln.size + 1);
     }
 
-    private LNode<K, V> toReplaced(final LNode<K, V> ln, final LNodeEntry<K, V> entry, final @NonNull V val) {
-        return new LNode<>(ln, replace(entry, val), ln.size);
-    }
-
-    // Visible for testing
-    final LNodeEntries<K, V> replace(final LNodeEntry<K, V> entry, final @NonNull V value) {
-        final var removed = removeEntry(entry);
-        return removed == null ? new Single<>(entry.key(), value) : new Multiple<>(entry.key(), value, removed);
-    }
-
-    // Visible for testing
-    final @Nullable LNodeEntry<K, V> findEntry(final @NonNull K key) {
-        // We do not perform recursion on purpose here, so we do not run out of stack if the key hashing fails.
-        var entry = this;
-        do {
-            if (key.equals(entry.key())) {
-                return entry;
-            }
-
-            entry = entry.next();
-        } while (entry != null);
-
-        return null;
-    }
-
-    // Visible for testing
-    final LNodeEntries<K, V> insertEntry(final @NonNull K key, final @NonNull V value) {
-        return new Multiple<>(key, value, this);
-    }
-
-    // Visible for testing
-    final LNodeEntries<K, V> removeEntry(final LNodeEntry<K, V> entry) {
-        if (entry == this) {
-            return next();
-        }
-
-        // This will result in a list with a long tail, i.e last entry storing explicit null. Overhead is amortized
-        // against the number of entries. We do not retain chains shorter than two, so the worst-case overhead is
-        // half-a-reference for an entry.
-        final var ret = new Multiple<>(this);
-
-        var last = ret;
-        var cur = next();
-        while (cur != null) {
-            // We cannot use equals() here, as it is wired to key equality and we must never compare entries based on
-            // that property. This method is intended to remove a known reference, so identity is what we want.
-            if (entry == cur) {
-                last.next = cur.next();
-                return ret;
-            }
-
-            final var tmp = new Multiple<>(cur);
-            last.next = tmp;
-            last = tmp;
-            cur = cur.next();
+    LNode<K, V> toReplaced(final LNode<K, V> ln, final BiFunction<? super K, ? super V, ? extends V> fn) {
+        // Note: this reverses the order of entries, which does not matter
+        Chain<K, V> map = null;
+        for (var entry : this) {
+            final var key = entry.key();
+            map = prepend(map, key, requireNonNull(fn.apply(key, entry.value())));
         }
+        return new LNode<>(ln, map, ln.size);
+    }
 
-        throw new VerifyException("Failed to find entry " + entry);
+    private LNode<K, V> toReplaced(final LNode<K, V> ln, final LNodeEntry<K, V> entry, final @NonNull V val) {
+        return new LNode<>(ln, replace(entry, val), ln.size);
     }
 }
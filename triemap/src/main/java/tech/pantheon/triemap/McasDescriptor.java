@@ -0,0 +1,279 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static tech.pantheon.triemap.Constants.HASH_BITS;
+import static tech.pantheon.triemap.Constants.LEVEL_BITS;
+import static tech.pantheon.triemap.Constants.LEVEL_MASK;
+import static tech.pantheon.triemap.Result.RESTART;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A multi-word compare-and-swap descriptor, atomically updating the main nodes of a number of {@link INode}s on behalf
+ * of {@link MutableTrieMap#compareAndSet(Map, Map)}.
+ *
+ * <p>Each new {@link MainNode} is installed with its GCAS predecessor pointing to this descriptor, so that any thread
+ * encountering it in {@code gcasComplete()} can help finish the operation. The operation succeeds if all main nodes are
+ * installed while the root remains in the same generation. Otherwise it fails and the original main nodes are restored.
+ *
+ * <p>INodes are always installed in the order of their position in the trie, hence helping other descriptors always
+ * makes progress.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+final class McasDescriptor<K, V> {
+    /**
+     * A change to a single key: the key is expected to be mapped to {@code expected} and will be mapped to
+     * {@code update}, where {@code null} means the mapping is absent.
+     */
+    record Change<K, V>(@NonNull K key, int hc, @Nullable V expected, @Nullable V update) {
+        // Nothing else
+    }
+
+    /**
+     * The INode whose main node holds a key's slot, along with its parent and level.
+     */
+    record Location<K, V>(INode<K, V> in, @Nullable INode<K, V> parent, int lev) {
+        // Nothing else
+    }
+
+    private enum Status {
+        UNDECIDED,
+        SUCCEEDED,
+        FAILED
+    }
+
+    private static final class Group<K, V> {
+        final List<Change<K, V>> changes = new ArrayList<>();
+        final Location<K, V> loc;
+        final int hc;
+
+        MainNode<K, V> expected;
+        MainNode<K, V> next;
+        // Slots holding INodes which are being emptied
+        int drop;
+
+        Group(final Location<K, V> loc, final int hc) {
+            this.loc = loc;
+            this.hc = hc;
+        }
+
+        // Order of INodes: by their hash prefix, ancestors before descendants
+        long order() {
+            final int lev = loc.lev();
+            final int mask = lev >= HASH_BITS ? -1 : ~(-1 >>> lev);
+            return Integer.toUnsignedLong(CNode.prefixOrder(hc) & mask) << Byte.SIZE | lev;
+        }
+    }
+
+    private static final VarHandle STATUS_VH;
+
+    static {
+        try {
+            STATUS_VH = MethodHandles.lookup().findVarHandle(McasDescriptor.class, "status", Status.class);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final MutableTrieMap<K, V> map;
+    private final Gen gen;
+    private final INode<K, V>[] nodes;
+    private final MainNode<K, V>[] expected;
+    private final MainNode<K, V>[] next;
+
+    @SuppressFBWarnings(value = "UUF_UNUSED_FIELD",
+        justification = "https://github.com/spotbugs/spotbugs/issues/2749")
+    // Never accessed directly, always go through STATUS_VH
+    private volatile Status status;
+
+    @SuppressWarnings("unchecked")
+    private McasDescriptor(final MutableTrieMap<K, V> map, final Gen gen, final List<Group<K, V>> groups) {
+        this.map = map;
+        this.gen = gen;
+
+        final int size = groups.size();
+        nodes = new INode[size];
+        expected = new MainNode[size];
+        next = new MainNode[size];
+        for (int i = 0; i < size; i++) {
+            final var group = groups.get(i);
+            nodes[i] = group.loc.in();
+            expected[i] = group.expected;
+            next[i] = group.next;
+            INode.prepareInstall(group.next, group.expected, this);
+        }
+        STATUS_VH.setRelease(this, Status.UNDECIDED);
+    }
+
+    /**
+     * Prepare a descriptor for a set of changes.
+     *
+     * @return An {@link McasDescriptor}, {@link Result#RESTART} if the preparation needs to be restarted, or
+     *         {@code null} if an expected mapping does not match
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> @Nullable Object prepare(final MutableTrieMap<K, V> map, final INode<K, V> root,
+            final Collection<Change<K, V>> changes) {
+        final var gen = root.gen;
+
+        // Locate INodes holding each key's slot and group changes by them
+        final var groups = new IdentityHashMap<INode<K, V>, Group<K, V>>();
+        for (var change : changes) {
+            final var found = root.locate(map, gen, change.hc(), 0, null);
+            if (found == RESTART) {
+                return RESTART;
+            }
+            final var loc = (Location<K, V>) found;
+            if (loc.in().gen != gen) {
+                // we may only ever touch INodes from our generation
+                return RESTART;
+            }
+            groups.computeIfAbsent(loc.in(), in -> new Group<>(loc, change.hc())).changes.add(change);
+        }
+
+        // Read main nodes and validate expected mappings
+        for (var group : groups.values()) {
+            final var m = group.loc.in().gcasRead(map);
+            for (var change : group.changes) {
+                final Object current;
+                if (m instanceof CNode<K, V> cn) {
+                    current = cn.slotValue(map.equiv, change.hc(), change.key(), group.loc.lev());
+                } else if (m instanceof LNode<K, V> ln) {
+                    current = ln.entries.lookup(map.equiv, change.key());
+                } else {
+                    // TNode: location will clean it up
+                    return RESTART;
+                }
+                if (current == RESTART) {
+                    return RESTART;
+                }
+                if (!Objects.equals(current, change.expected())) {
+                    return null;
+                }
+            }
+            group.expected = m;
+        }
+
+        // Compute new LNodes first, as emptying them requires their INode to be dropped from the parent
+        for (var group : List.copyOf(groups.values())) {
+            if (group.expected instanceof LNode<K, V> ln) {
+                final var next = ln.entries.toChanged(map.equiv, ln, group.changes);
+                if (next != null) {
+                    group.next = next;
+                    continue;
+                }
+
+                // Tomb the INode, so that it cannot be updated, and drop it from the parent
+                group.next = new TNode<>(ln, ln.entries.key(), ln.entries.value(), group.hc);
+                final var in = group.loc.in();
+                final var parent = VerifyException.throwIfNull(group.loc.parent());
+                final int lev = group.loc.lev() - LEVEL_BITS;
+                var parentGroup = groups.get(parent);
+                if (parentGroup == null) {
+                    if (parent.gen != gen) {
+                        return RESTART;
+                    }
+                    parentGroup = new Group<>(new Location<>(parent, null, lev), group.hc);
+                    parentGroup.expected = parent.gcasRead(map);
+                    groups.put(parent, parentGroup);
+                }
+                if (!(parentGroup.expected instanceof CNode<K, V> cn) || !cn.holds(in, group.hc, lev)) {
+                    return RESTART;
+                }
+                parentGroup.drop |= 1 << (group.hc >>> lev & LEVEL_MASK);
+            }
+        }
+        for (var group : groups.values()) {
+            if (group.expected instanceof CNode<K, V> cn) {
+                group.next = cn.toChanged(map, gen, group.loc.lev(), group.changes, group.drop);
+            }
+        }
+
+        final var sorted = new ArrayList<>(groups.values());
+        sorted.sort(Comparator.comparingLong(Group::order));
+        return new McasDescriptor<>(map, gen, sorted);
+    }
+
+    /**
+     * Run this descriptor to completion on behalf of the thread which prepared it.
+     *
+     * @return {@code true} if the changes have been applied
+     */
+    boolean complete() {
+        final var result = help();
+        // Resolve our main nodes, so that readers do not have to
+        for (var in : nodes) {
+            in.gcasRead(map);
+        }
+        return result == Status.SUCCEEDED;
+    }
+
+    /**
+     * Resolve this descriptor on behalf of a thread encountering one of its main nodes. Threads operating on our map
+     * help us finish, all others (i.e. snapshots) abort us.
+     *
+     * @param ct TrieMap reference
+     * @return {@code true} if the changes have been applied
+     */
+    boolean resolve(final TrieMap<?, ?> ct) {
+        final var local = (Status) STATUS_VH.getAcquire(this);
+        if (local != Status.UNDECIDED) {
+            return local == Status.SUCCEEDED;
+        }
+        return (ct == map ? help() : decide(Status.FAILED)) == Status.SUCCEEDED;
+    }
+
+    /**
+     * Abort this descriptor, unless it has already been decided.
+     *
+     * @return {@code true} if the changes have been applied
+     */
+    boolean abort() {
+        return decide(Status.FAILED) == Status.SUCCEEDED;
+    }
+
+    private Status help() {
+        for (int i = 0; i < nodes.length; i++) {
+            final var local = (Status) STATUS_VH.getAcquire(this);
+            if (local != Status.UNDECIDED) {
+                return local;
+            }
+            if (!nodes[i].install(map, expected[i], next[i])) {
+                return decide(Status.FAILED);
+            }
+        }
+        return decide(map.readRoot(true).gen == gen ? Status.SUCCEEDED : Status.FAILED);
+    }
+
+    private Status decide(final Status proposed) {
+        final var witness = (Status) STATUS_VH.compareAndExchange(this, Status.UNDECIDED, proposed);
+        return witness == Status.UNDECIDED ? proposed : witness;
+    }
+}
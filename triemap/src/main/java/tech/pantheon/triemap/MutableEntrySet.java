@@ -15,8 +15,11 @@
  */
 package tech.pantheon.triemap;
 
+import static java.util.Objects.requireNonNull;
+
 import java.util.Map.Entry;
 import java.util.Spliterator;
+import java.util.function.Predicate;
 
 /**
  * Support for EntrySet operations required by the Map interface.
@@ -58,6 +61,16 @@ final class MutableEntrySet<K, V> extends AbstractEntrySet<K, V, MutableTrieMap<
         return map.remove(key, value);
     }
 
+    @Override
+    public boolean removeIf(final Predicate<? super Entry<K, V>> filter) {
+        return map.removeAll(requireNonNull(filter));
+    }
+
+    @Override
+    MutableIterator<K, V> rangeIterator(final Branch<K, V>[] array, final int from, final int to) {
+        return map.iterator(array, from, to);
+    }
+
     @Override
     int characteristics() {
         return Spliterator.DISTINCT | Spliterator.CONCURRENT | Spliterator.NONNULL;
@@ -29,7 +29,12 @@ final class MutableIterator<K, V> extends AbstractIterator<K, V> {
     private MutableEntry<K, V> lastReturned;
 
     MutableIterator(final MutableTrieMap<K, V> map) {
-        super(map.immutableSnapshot());
+        super(map, map.readRoot());
+        mutable = map;
+    }
+
+    MutableIterator(final MutableTrieMap<K, V> map, final Branch<K, V>[] array, final int from, final int to) {
+        super(map, array, from, to);
         mutable = map;
     }
 
@@ -15,7 +15,10 @@
  */
 package tech.pantheon.triemap;
 
+import static java.util.Objects.requireNonNull;
+
 import java.util.Spliterator;
+import java.util.function.Predicate;
 
 /**
  * A mutable view of a TrieMap's key set.
@@ -45,6 +48,12 @@ final class MutableKeySet<K> extends AbstractKeySet<K, MutableTrieMap<K, ?>> {
         return map.remove(o) != null;
     }
 
+    @Override
+    public boolean removeIf(final Predicate<? super K> filter) {
+        requireNonNull(filter);
+        return map.removeAll(entry -> filter.test(entry.getKey()));
+    }
+
     @Override
     int spliteratorCharacteristics() {
         return Spliterator.DISTINCT | Spliterator.CONCURRENT | Spliterator.NONNULL;
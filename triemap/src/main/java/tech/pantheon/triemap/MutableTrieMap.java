@@ -16,6 +16,7 @@
 package tech.pantheon.triemap;
 
 import static java.util.Objects.requireNonNull;
+import static tech.pantheon.triemap.Constants.LEVEL_BITS;
 import static tech.pantheon.triemap.PresencePredicate.ABSENT;
 import static tech.pantheon.triemap.PresencePredicate.PRESENT;
 import static tech.pantheon.triemap.Result.RESTART;
@@ -23,7 +24,20 @@ import static tech.pantheon.triemap.Result.RESTART;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 
@@ -36,14 +50,19 @@ import org.eclipse.jdt.annotation.Nullable;
  * @param <V> the type of mapped values
  */
 public final class MutableTrieMap<K, V> extends TrieMap<K, V> {
+    // Maximum number of levels pre-built by newRootNode(Gen, int), i.e. 32768 bottom CNodes
+    private static final int MAX_SKELETON_LEVELS = 3;
     @java.io.Serial
     private static final long serialVersionUID = 1L;
 
     private static final VarHandle VH;
+    private static final VarHandle LOADERS_VH;
 
     static {
+        final var lookup = MethodHandles.lookup();
         try {
-            VH = MethodHandles.lookup().findVarHandle(MutableTrieMap.class, "root", Root.class);
+            VH = lookup.findVarHandle(MutableTrieMap.class, "root", Root.class);
+            LOADERS_VH = lookup.findVarHandle(MutableTrieMap.class, "loaders", MutableTrieMap.class);
         } catch (NoSuchFieldException | IllegalAccessException e) {
             throw new ExceptionInInitializerError(e);
         }
@@ -52,13 +71,64 @@ public final class MutableTrieMap<K, V> extends TrieMap<K, V> {
     // Either an INode or a RDCSS_Descriptor
     @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "Handled through writeReplace()")
     private transient volatile Root<K, V> root;
+    // Loaders currently executing computeIfAbsentOnce(), lazily instantiated. Never accessed directly, always go
+    // through LOADERS_VH.
+    @SuppressFBWarnings(value = { "SE_TRANSIENT_FIELD_NOT_RESTORED", "UUF_UNUSED_FIELD" },
+        justification = "Handled through writeReplace(), https://github.com/spotbugs/spotbugs/issues/2749")
+    private transient volatile MutableTrieMap<K, Loader<V>> loaders;
+
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "Handled through writeReplace")
+    private transient MutableValues<V> theValues;
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "Handled through writeReplace")
+    private transient ImmutableEntrySet<K, V> readOnlyEntrySet;
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "Handled through writeReplace")
+    private transient ImmutableKeySet<K> readOnlyKeySet;
+
+    // Number of times operations had to be restarted
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "Handled through writeReplace")
+    private final transient LongAdder restartCounter = new LongAdder();
+
+    // The map we have been forked from by mutableSnapshot() and the frozen root we have last been in sync with, used by
+    // commit()
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "Handled through writeReplace")
+    private final transient @Nullable MutableTrieMap<K, V> origin;
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "Handled through writeReplace")
+    private transient volatile INode<K, V> base;
+
+    // Combiner of contended updates, if enabled
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "Handled through writeReplace")
+    private final transient @Nullable Combiner<K, V> combiner;
+
+    // The last snapshot we have taken, shared with subsequent snapshots as long as this map has not been modified, or
+    // for snapshotWindow nanoseconds. Weakly referenced, so we do not retain an outdated tree.
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "Handled through writeReplace")
+    private transient volatile @Nullable SnapshotReference<K, V> lastSnapshot;
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "Handled through writeReplace")
+    private final transient long snapshotWindow;
+
+    // Background compactor, if enabled
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "Handled through writeReplace")
+    private final transient @Nullable Compactor compactor;
+
+    MutableTrieMap(final Equivalence<? super K> equiv) {
+        this(new Options<>(equiv), newRootNode());
+    }
 
-    MutableTrieMap() {
-        this(newRootNode());
+    MutableTrieMap(final Options<K> options, final INode<K, V> root) {
+        this(options, root, null, null);
     }
 
-    MutableTrieMap(final INode<K, V> root) {
+    private MutableTrieMap(final Options<K> options, final INode<K, V> root,
+            final @Nullable MutableTrieMap<K, V> origin, final @Nullable INode<K, V> base) {
+        super(options);
         this.root = requireNonNull(root);
+        this.origin = origin;
+        this.base = base;
+        // Combiner and compactor keep per-map state, hence each map gets its own
+        combiner = options.combining() ? new Combiner<>() : null;
+        snapshotWindow = options.snapshotWindow();
+        final var executor = options.compactionExecutor();
+        compactor = executor == null ? null : new Compactor(executor, options.compactionThreshold());
     }
 
     @Override
@@ -76,6 +146,62 @@ public final class MutableTrieMap<K, V> extends TrieMap<K, V> {
         return insertIf(k, requireNonNull(value), null);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation sorts the mappings by their hash prefixes and then merges them into each affected node in
+     * a single step, building any new subtrees off to the side. Each mapping is inserted atomically, but the operation
+     * as a whole is not atomic: concurrent readers may observe only some of the mappings having been inserted.
+     */
+    @Override
+    public void putAll(final Map<? extends K, ? extends V> map) {
+        final var nodes = new ArrayList<SNode<K, V>>(map.size());
+        for (var entry : map.entrySet()) {
+            final K key = requireNonNull(entry.getKey());
+            nodes.add(new SNode<>(key, requireNonNull(entry.getValue()), hash(key)));
+        }
+        // Note: this is a stable sort, hence for duplicate keys the last value wins
+        nodes.sort((first, second) -> Integer.compareUnsigned(CNode.prefixOrder(first.hc()),
+            CNode.prefixOrder(second.hc())));
+
+        var batch = deduplicate(equiv, nodes);
+        int restarts = 0;
+        while (batch.length != 0) {
+            // Keep looping as long as some entries fail to be inserted
+            final var failed = new ArrayList<SNode<K, V>>();
+            final var r = readRoot();
+            r.insertAll(this, r.gen, batch, 0, batch.length, 0, null, failed);
+            batch = toArray(failed);
+            if (batch.length != 0) {
+                restart(++restarts);
+            }
+        }
+    }
+
+    // Remove entries with duplicate keys, retaining the last one. Relies on entries with the same hash being adjacent.
+    private static <K, V> SNode<K, V>[] deduplicate(final Equivalence<? super K> equiv, final List<SNode<K, V>> nodes) {
+        final int size = nodes.size();
+        final var ret = toArray(nodes);
+        int len = 0;
+
+        next: for (int i = 0; i < size; i++) {
+            final var sn = ret[i];
+            for (int j = len - 1; j >= 0 && ret[j].hc() == sn.hc(); j--) {
+                if (ret[j].matches(equiv, sn.hc(), sn.key())) {
+                    ret[j] = sn;
+                    continue next;
+                }
+            }
+            ret[len++] = sn;
+        }
+        return len == size ? ret : Arrays.copyOf(ret, len);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> SNode<K, V>[] toArray(final List<SNode<K, V>> nodes) {
+        return nodes.toArray(SNode[]::new);
+    }
+
     @Override
     @SuppressWarnings("null")
     public V putIfAbsent(final K key, final V value) {
@@ -111,80 +237,454 @@ public final class MutableTrieMap<K, V> extends TrieMap<K, V> {
         return insertIf(k, requireNonNull(value), PRESENT);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation walks the trie, replacing the values stored in each node with a single atomic update and
+     * retrying only nodes which are concurrently modified. Mappings added concurrently with this method may not be
+     * processed. {@code function} may be invoked multiple times for a mapping when contended.
+     */
+    @Override
+    public void replaceAll(final BiFunction<? super K, ? super V, ? extends V> function) {
+        final var fn = requireNonNull(function);
+        final var r = readRoot();
+        r.replaceAll(this, r.gen, fn, 0);
+    }
+
+    // Equivalent of ConcurrentMap.replaceAll() for a single mapping
+    void replaceEntry(final @NonNull K key, final @NonNull V value,
+            final BiFunction<? super K, ? super V, ? extends V> fn) {
+        var current = value;
+        while (!replace(key, current, fn.apply(key, current))) {
+            current = get(key);
+            if (current == null) {
+                return;
+            }
+        }
+    }
+
+    // Remove all mappings matching the filter in a single traversal of the trie, visiting each node once
+    boolean removeAll(final Predicate<? super Entry<K, V>> filter) {
+        final var r = readRoot();
+        return r.removeAll(this, r.gen, filter, 0);
+    }
+
+    // Return the combiner to hand off an update which has been restarted specified number of times, or null if it
+    // should be retried
+    private @Nullable Combiner<K, V> combiner(final int restarts) {
+        final var local = combiner;
+        return local != null && restarts >= Combiner.RESTARTS && !local.isCombining() ? local : null;
+    }
+
     @SuppressWarnings("unchecked")
     private @Nullable V insertIf(final @NonNull K key, final @NonNull V value, final @Nullable Object cond) {
-        final int hc = computeHash(key);
+        final int hc = hash(key);
+
+        for (int restarts = 0; ; restart(++restarts)) {
+            final var local = combiner(restarts);
+            if (local != null) {
+                return (V) local.apply(this, Combiner.insertIf(key, value, cond));
+            }
 
-        Object res;
-        do {
             // Keep looping as long as we do not get a reply
             final var r = readRoot();
-            res = r.insertIf(this, r.gen, hc, key, value, cond, 0, null);
-        } while (res == RESTART);
-
-        return (V) res;
+            final var res = r.insertIf(this, r.gen, hc, key, value, cond, 0, null);
+            if (res != RESTART) {
+                return (V) res;
+            }
+        }
     }
 
     @SuppressWarnings("unchecked")
     private @Nullable V removeIf(final @NonNull K key, final @Nullable Object cond) {
-        final int hc = computeHash(key);
+        final int hc = hash(key);
+
+        for (int restarts = 0; ; restart(++restarts)) {
+            final var local = combiner(restarts);
+            if (local != null) {
+                return (V) local.apply(this, Combiner.removeIf(key, cond));
+            }
 
-        Object res;
-        do {
             // Keep looping as long as we do not get a reply
             final var r = readRoot();
-            res = r.remove(this, r.gen, hc, key, cond, 0, null);
-        } while (res == RESTART);
-
-        return (V) res;
+            final var res = r.remove(this, r.gen, hc, key, cond, 0, null);
+            if (res != RESTART) {
+                return (V) res;
+            }
+        }
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public V computeIfAbsent(final K key, final Function<? super K, ? extends V> mappingFunction) {
         final var k = requireNonNull(key);
-        final int hc = computeHash(key);
+        final int hc = hash(key);
         final var fn = requireNonNull(mappingFunction);
 
-        // Keep looping as long as RESTART is being returned
-        Object res;
-        do {
+        for (int restarts = 0; ; restart(++restarts)) {
+            final var local = combiner(restarts);
+            if (local != null) {
+                return (V) local.apply(this, Combiner.compute(k, (ck, cv) -> cv != null ? cv : fn.apply(ck)));
+            }
+
             // Keep looping as long as we do not get a reply
             final var r = readRoot();
-            res = r.computeIfAbsent(this, r.gen, hc, k, fn, 0, null);
-        } while (res == RESTART);
+            final var res = r.computeIfAbsent(this, r.gen, hc, k, fn, 0, null);
+            if (res != RESTART) {
+                return (V) res;
+            }
+        }
+    }
+
+    /**
+     * A variant of {@link #computeIfAbsent(Object, Function)}, which guarantees that {@code mappingFunction} is invoked
+     * at most once by concurrent callers operating on the same absent key. One of the callers executes the function,
+     * while all the others wait for it to finish and share its outcome, be it a value, a {@code null} or an exception.
+     * Waiting callers park without holding any monitors, hence this method is suitable for use with virtual threads.
+     *
+     * <p>This method is a good fit for expensive functions. It is slightly more costly than
+     * {@link #computeIfAbsent(Object, Function)}, which never blocks, but may invoke the function multiple times when
+     * contended.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param mappingFunction the function to compute a value
+     * @return the current (existing or computed) value associated with the specified key, or null if the computed
+     *         value is null
+     * @throws NullPointerException if the specified key or mappingFunction is null
+     * @throws IllegalStateException if the mappingFunction recursively invokes this method for the same key
+     */
+    @SuppressWarnings("checkstyle:illegalCatch")
+    public V computeIfAbsentOnce(final K key, final Function<? super K, ? extends V> mappingFunction) {
+        final var k = requireNonNull(key);
+        final var fn = requireNonNull(mappingFunction);
+
+        // Fast path: the mapping exists
+        final var existing = get(k);
+        if (existing != null) {
+            return existing;
+        }
+
+        final var inflight = loaders();
+        final var loader = new Loader<V>();
+        final var witness = inflight.putIfAbsent(k, loader);
+        if (witness != null) {
+            // Somebody else is loading the key, wait for them to finish
+            return witness.await();
+        }
+
+        try {
+            // Re-check the mapping now that our loader is visible: a loader which finished before we have published
+            // ours has installed its value before removing itself.
+            var value = get(k);
+            if (value == null) {
+                final var computed = fn.apply(k);
+                if (computed != null) {
+                    final var prev = putIfAbsent(k, computed);
+                    value = prev != null ? prev : computed;
+                }
+            }
+            loader.complete(value);
+            return value;
+        } catch (Throwable e) {
+            // Note: this includes checked exceptions thrown sneakily, our waiters need to see them as well
+            loader.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(k, loader);
+        }
+    }
 
-        return (V) res;
+    @Override
+    public V compute(final K key, final BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return computeImpl(requireNonNull(key), requireNonNull(remappingFunction));
+    }
+
+    @Override
+    public V computeIfPresent(final K key, final BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        final var fn = requireNonNull(remappingFunction);
+        return computeImpl(requireNonNull(key), (k, v) -> v == null ? null : fn.apply(k, v));
+    }
+
+    @Override
+    public V merge(final K key, final V value, final BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        final var val = requireNonNull(value);
+        final var fn = requireNonNull(remappingFunction);
+        return computeImpl(requireNonNull(key), (k, v) -> v == null ? val : fn.apply(v, val));
+    }
+
+    @SuppressWarnings("unchecked")
+    private @Nullable V computeImpl(final @NonNull K key,
+            final @NonNull BiFunction<? super K, ? super V, ? extends V> fn) {
+        final int hc = hash(key);
+
+        for (int restarts = 0; ; restart(++restarts)) {
+            final var local = combiner(restarts);
+            if (local != null) {
+                return (V) local.apply(this, Combiner.compute(key, fn));
+            }
+
+            // Keep looping as long as we do not get a reply
+            final var r = readRoot();
+            final var res = r.compute(this, r.gen, hc, key, fn, 0, null);
+            if (res != RESTART) {
+                return (V) res;
+            }
+        }
+    }
+
+    /**
+     * Atomically update a number of mappings, provided they currently match expectations. Every key present in
+     * either {@code expected} or {@code update} is considered: it is expected to be mapped to the value in
+     * {@code expected}, or to be absent if {@code expected} does not contain it. If all expectations hold, each such
+     * key is mapped to its value in {@code update}, or removed if {@code update} does not contain it. For example, to
+     * move a mapping from key {@code a} to key {@code b}:
+     * <pre>{@code
+     *     map.compareAndSet(Map.of(a, value), Map.of(b, value));
+     * }</pre>
+     * and to reserve keys {@code a} and {@code b} for an owner, provided neither of them is present:
+     * <pre>{@code
+     *     map.compareAndSet(Map.of(), Map.of(a, owner, b, owner));
+     * }</pre>
+     *
+     * <p>Keys are matched using this map's {@link Equivalence}, hence a key in {@code update} refers to the same
+     * mapping as an equivalent key in {@code expected}.
+     *
+     * <p>This operation is lock-free and linearizable: readers either observe all of the updates or none of them.
+     * Operations touching disjoint parts of the map proceed in parallel.
+     *
+     * @param expected expected mappings
+     * @param update updated mappings
+     * @return {@code true} if the mappings have been updated, {@code false} if some expectation did not hold
+     * @throws NullPointerException if any of the arguments, or any of their keys or values, is null
+     * @throws IllegalArgumentException if {@code expected} or {@code update} contains multiple keys which are
+     *         equivalent to each other
+     */
+    public boolean compareAndSet(final Map<? extends K, ? extends V> expected,
+            final Map<? extends K, ? extends V> update) {
+        // Changes need to be keyed by our equivalence, but we do not want to pay for a TrieMap in the common case
+        final Map<K, McasDescriptor.Change<K, V>> changes = equiv == Equivalence.equals() ? new LinkedHashMap<>()
+            : new MutableTrieMap<>(equiv);
+        for (var entry : expected.entrySet()) {
+            final K key = requireNonNull(entry.getKey());
+            final V value = requireNonNull(entry.getValue());
+            if (changes.putIfAbsent(key, new McasDescriptor.Change<>(key, hash(key), value, null)) != null) {
+                throw new IllegalArgumentException("Duplicate expected key " + key);
+            }
+        }
+        // Note: we need to merge updates into expectations using our equivalence, not update.get()
+        for (var entry : update.entrySet()) {
+            final K key = requireNonNull(entry.getKey());
+            final V value = requireNonNull(entry.getValue());
+            changes.compute(key, (k, prev) -> {
+                if (prev == null) {
+                    return new McasDescriptor.Change<>(key, hash(key), null, value);
+                }
+                if (prev.update() != null) {
+                    throw new IllegalArgumentException("Duplicate update key " + key);
+                }
+                return new McasDescriptor.Change<>(prev.key(), prev.hc(), prev.expected(), value);
+            });
+        }
+        if (changes.isEmpty()) {
+            return true;
+        }
+
+        int delta = 0;
+        for (var change : changes.values()) {
+            delta += (change.update() != null ? 1 : 0) - (change.expected() != null ? 1 : 0);
+        }
+
+        for (int restarts = 0; ; restart(++restarts)) {
+            final var r = readRoot();
+            final var res = McasDescriptor.prepare(this, r, changes.values());
+            if (res == null) {
+                return false;
+            }
+            if (res instanceof McasDescriptor<?, ?> desc && desc.complete()) {
+                r.gen.entries.add(delta);
+                if (delta < 0) {
+                    removed(-delta);
+                }
+                return true;
+            }
+            // Keep looping as long as we need to restart or are interfered with
+        }
+    }
+
+    private @NonNull MutableTrieMap<K, Loader<V>> loaders() {
+        final var local = (MutableTrieMap<K, Loader<V>>) LOADERS_VH.getAcquire(this);
+        if (local != null) {
+            return local;
+        }
+
+        final var created = new MutableTrieMap<K, Loader<V>>(equiv);
+        final var witness = (MutableTrieMap<K, Loader<V>>) LOADERS_VH.compareAndExchange(this, null, created);
+        return witness != null ? witness : created;
+    }
+
+    /**
+     * Return the number of times operations on this map have been restarted due to concurrent modification. Restarted
+     * operations back off for an increasing amount of time, so as to reduce contention. This counter is intended for
+     * monitoring purposes.
+     *
+     * @return number of restarts
+     */
+    public long restartCount() {
+        return restartCounter.sum();
     }
 
     @Override
     public int size() {
-        return immutableSnapshot().size();
+        return snapshot(0).size();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The count is maintained incrementally by modifications once they have been committed, hence it does not take
+     * a snapshot and is cheap to obtain. It may not reflect modifications which are in progress, but it is exact once
+     * they have completed.
+     */
+    @Override
+    public long mappingCount() {
+        return Math.max(0, readRoot().gen.entries.sum());
     }
 
     private INode<K, V> snapshot() {
+        return snapshot(0).readRoot();
+    }
+
+    private ImmutableTrieMap<K, V> snapshot(final long window) {
+        final var ref = lastSnapshot;
+        if (ref != null) {
+            // Every modification replaces the root's main node, as it needs to renew it first. Hence if our last
+            // snapshot's main node is still the current one, this map has not been modified since and we can reuse it.
+            final var prev = ref.get();
+            if (prev != null && (window != 0 && System.nanoTime() - ref.nanos < window
+                || prev.readRoot().gcasRead(prev) == readRoot().gcasRead(this))) {
+                return prev;
+            }
+        }
+
         INode<K, V> localRoot;
         do {
             localRoot = readRoot();
-        } while (!rdcssRoot(localRoot, localRoot.gcasRead(this), localRoot.copyToGen(this, new Gen())));
+        } while (!rdcssRoot(localRoot, localRoot.gcasRead(this),
+            localRoot.copyToGen(this, new Gen(localRoot.gen.entries))));
 
-        return localRoot;
+        final var ret = new ImmutableTrieMap<>(options, localRoot);
+        lastSnapshot = new SnapshotReference<>(ret, System.nanoTime());
+        return ret;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Snapshots taken while this map is not being modified are shared, hence this method may return the same
+     * object multiple times. If this map has been created by {@link TrieMap#createCoalescing(java.time.Duration)},
+     * snapshots returned by this method are also shared for the specified time window, regardless of modifications.
+     */
     @Override
     public ImmutableTrieMap<K, V> immutableSnapshot() {
-        return new ImmutableTrieMap<>(snapshot());
+        return snapshot(snapshotWindow);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The returned map remembers this map as its origin, so that changes made to it can be published back via
+     * {@link #commit()}.
+     */
     @Override
     public MutableTrieMap<K, V> mutableSnapshot() {
-        return new MutableTrieMap<>(snapshot().copyToGen(this, new Gen()));
+        final var frozen = snapshot(0);
+        final var frozenRoot = frozen.readRoot();
+        return new MutableTrieMap<>(options, frozenRoot.copyToGen(this, new Gen(new EntryCounter(frozen))), this,
+            frozenRoot);
+    }
+
+    /**
+     * Publish changes made to this map since it has been forked off its origin by {@link #mutableSnapshot()}, or since
+     * the last successful commit, into the origin. Changes made to the origin in the meantime are retained, as long as
+     * they do not conflict with ours. Two changes conflict when they modify the same mapping differently, or when they
+     * modify the same subtree in a way which cannot be reconciled at the level of individual mappings.
+     *
+     * <p>Subtrees which have not been modified are detected by their identity and are carried over by reference, hence
+     * the cost of this operation is proportional to the size of the changes, not to the size of the maps. Changes are
+     * published atomically: readers of the origin observe either all of them or none of them.
+     *
+     * @return {@code true} if the changes have been published, {@code false} if they conflict with changes made to the
+     *         origin, in which case it has not been modified
+     * @throws IllegalStateException if this map has not been created by {@link MutableTrieMap#mutableSnapshot()}
+     */
+    public boolean commit() {
+        final var target = origin;
+        if (target == null) {
+            throw new IllegalStateException("This map has not been forked off another MutableTrieMap");
+        }
+
+        final var baseMain = (CNode<K, V>) base.gcasReadNonNull(target);
+        final var ours = snapshot();
+        final var ourMain = (CNode<K, V>) ours.gcasReadNonNull(this);
+        for (int restarts = 0; ; target.restart(++restarts)) {
+            // Freeze the origin so we can compute the merge, then install it provided the origin has not been modified
+            // in the meantime. Every modification replaces the root's main node, as it needs to renew it first.
+            final var theirs = target.snapshot(0);
+            final var theirRoot = theirs.readRoot();
+            final var theirMain = (CNode<K, V>) theirRoot.gcasReadNonNull(target);
+            // The merged tree keeps the origin's entry counter, adjusted by the number of entries we have added
+            final var ngen = new Gen(theirRoot.gen.entries);
+            final var delta = new EntryCounter();
+            final var merged = theirMain.toMerged(theirs, baseMain, ourMain, ngen, 0, delta);
+            if (merged == null) {
+                return false;
+            }
+            if (target.rdcssRoot(target.readRoot(), theirMain, new INode<>(ngen, merged))) {
+                ngen.entries.add((int) delta.sum());
+                base = ours;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns a read-only view of the mappings contained in this map. Unlike {@link #entrySet()}, this view does not
+     * support modification of this map, neither directly nor through its iterators or entries, which makes iterating
+     * over it cheaper. Like {@link #entrySet()}, it reflects changes to this map and its iteration is weakly
+     * consistent.
+     *
+     * @return a read-only set view of the mappings contained in this map
+     */
+    public Set<Entry<K, V>> readOnlyEntrySet() {
+        final ImmutableEntrySet<K, V> ret;
+        return (ret = readOnlyEntrySet) != null ? ret : (readOnlyEntrySet = new ImmutableEntrySet<>(this));
+    }
+
+    /**
+     * Returns a read-only view of the keys contained in this map. Unlike {@link #keySet()}, this view does not support
+     * removal of keys from this map, neither directly nor through its iterators. Like {@link #keySet()}, it reflects
+     * changes to this map and its iteration is weakly consistent.
+     *
+     * @return a read-only set view of the keys contained in this map
+     */
+    public Set<K> readOnlyKeySet() {
+        final ImmutableKeySet<K> ret;
+        return (ret = readOnlyKeySet) != null ? ret : (readOnlyKeySet = new ImmutableKeySet<>(this));
+    }
+
+    /**
+     * Compact this map. Removing mappings leaves behind nodes which are cleaned up lazily, when a subsequent operation
+     * passes through them. Until then they keep occupying memory and lengthen the paths taken by lookups. This method
+     * cleans up all such nodes, bringing the map into its minimal shape. It does not block concurrent readers nor
+     * writers, but it does not clean up nodes which are shared with a snapshot, as doing so would not reclaim anything.
+     */
+    public void compact() {
+        final var r = readRoot();
+        r.compact(this, r.gen, 0);
     }
 
     @Override
     MutableEntrySet<K, V> createEntrySet() {
-        // FIXME: it would be nice to have a ReadWriteTrieMap with read-only iterator
-        //        if (readOnlyEntrySet) return ImmutableEntrySet(this);
         return new MutableEntrySet<>(this);
     }
 
@@ -193,16 +693,46 @@ public final class MutableTrieMap<K, V> extends TrieMap<K, V> {
         return new MutableKeySet<>(this);
     }
 
+    @Override
+    public Collection<V> values() {
+        final MutableValues<V> ret;
+        return (ret = theValues) != null ? ret : (theValues = new MutableValues<>(this));
+    }
+
     @Override
     MutableIterator<K, V> iterator() {
         return new MutableIterator<>(this);
     }
 
+    @Override
+    MutableIterator<K, V> iterator(final Branch<K, V>[] array, final int from, final int to) {
+        return new MutableIterator<>(this, array, from, to);
+    }
+
     @Override
     boolean isReadOnly() {
         return false;
     }
 
+    @Override
+    ImmutableTrieMap<K, V> currentSnapshot() {
+        return snapshot(0);
+    }
+
+    @Override
+    void restart(final int restarts) {
+        restartCounter.increment();
+        Backoff.backoff(restarts);
+    }
+
+    @Override
+    void removed(final int count) {
+        final var local = compactor;
+        if (local != null) {
+            local.removed(this, count);
+        }
+    }
+
     @Override
     INode<K, V> rdcssReadRoot(final boolean abort) {
         final var r = /* READ */ root;
@@ -210,6 +740,8 @@ public final class MutableTrieMap<K, V> extends TrieMap<K, V> {
             return in;
         } else if (r instanceof RdcssDescriptor<K, V> desc) {
             return rdcssComplete(desc, abort);
+        } else if (r instanceof RootSwap<K, V> swap) {
+            return swap.complete(this);
         } else {
             throw new VerifyException("Unhandled root " + r);
         }
@@ -220,7 +752,19 @@ public final class MutableTrieMap<K, V> extends TrieMap<K, V> {
         return new INode<>(gen, new CNode<>(gen));
     }
 
-    private Root<K, V> casRoot(final Root<K, V> prev, final Root<K, V> next) {
+    // Returns a root node with upper levels pre-built, so that each of the bottom CNodes is expected to end up holding
+    // a full complement of branches. We stop at MAX_SKELETON_LEVELS, so as not to allocate too much up front.
+    static <K, V> INode<K, V> newRootNode(final Gen gen, final int expectedSize) {
+        int levels = 0;
+        for (long slots = 1L << 2 * LEVEL_BITS; slots <= expectedSize && levels < MAX_SKELETON_LEVELS;
+                slots <<= LEVEL_BITS) {
+            levels++;
+        }
+
+        return new INode<>(gen, CNode.skeleton(gen, levels));
+    }
+
+    Root<K, V> casRoot(final Root<K, V> prev, final Root<K, V> next) {
         return (Root<K, V>) VH.compareAndExchange(this, prev, next);
     }
 
@@ -267,10 +811,48 @@ public final class MutableTrieMap<K, V> extends TrieMap<K, V> {
         }
     }
 
-    sealed interface Root<K, V> permits INode, RdcssDescriptor {
+    sealed interface Root<K, V> permits INode, RdcssDescriptor, RootSwap {
         // Marker interface for classes which may appear as roots to a MutableTrieMap
     }
 
+    /**
+     * A reference to a snapshot taken by {@link #immutableSnapshot()}, along with the time it has been taken.
+     */
+    private static final class SnapshotReference<K, V> extends WeakReference<ImmutableTrieMap<K, V>> {
+        // System.nanoTime() when the snapshot has been taken
+        final long nanos;
+
+        SnapshotReference(final ImmutableTrieMap<K, V> referent, final long nanos) {
+            super(referent);
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * A computation running on behalf of {@link #computeIfAbsentOnce(Object, Function)}.
+     */
+    private static final class Loader<V> extends CompletableFuture<V> {
+        private final Thread owner = Thread.currentThread();
+
+        V await() {
+            if (owner == Thread.currentThread()) {
+                throw new IllegalStateException("Recursive update");
+            }
+
+            // Wait for completion and then report the outcome as is, including checked exceptions thrown sneakily
+            exceptionally(failure -> null).join();
+            if (isCompletedExceptionally()) {
+                throw Loader.<RuntimeException>sneakyThrow(exceptionNow());
+            }
+            return resultNow();
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T extends Throwable> T sneakyThrow(final Throwable failure) throws T {
+            throw (T) failure;
+        }
+    }
+
     private static final class RdcssDescriptor<K, V> implements Root<K, V> {
         final INode<K, V> old;
         final MainNode<K, V> expectedmain;
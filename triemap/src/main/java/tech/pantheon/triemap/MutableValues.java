@@ -0,0 +1,104 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Spliterator;
+import java.util.function.Predicate;
+import org.eclipse.jdt.annotation.NonNull;
+
+/**
+ * A mutable view of a MutableTrieMap's values.
+ *
+ * @param <V> the type of values
+ */
+final class MutableValues<V> extends AbstractCollection<V> {
+    private static final class ValuesIterator<V> implements Iterator<V> {
+        private final Iterator<? extends Entry<?, V>> delegate;
+
+        ValuesIterator(final Iterator<? extends Entry<?, V>> delegate) {
+            this.delegate = requireNonNull(delegate);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public V next() {
+            return delegate.next().getValue();
+        }
+
+        @Override
+        public void remove() {
+            delegate.remove();
+        }
+    }
+
+    private final @NonNull MutableTrieMap<?, V> map;
+
+    MutableValues(final MutableTrieMap<?, V> map) {
+        this.map = requireNonNull(map);
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new ValuesIterator<>(map.iterator());
+    }
+
+    @Override
+    public Spliterator<V> spliterator() {
+        return valueSpliterator(map);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    @SuppressWarnings("checkstyle:parameterName")
+    public boolean contains(final Object o) {
+        return map.containsValue(o);
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public boolean removeIf(final Predicate<? super V> filter) {
+        requireNonNull(filter);
+        return map.removeAll(entry -> filter.test(entry.getValue()));
+    }
+
+    private static <K, V> Spliterator<V> valueSpliterator(final MutableTrieMap<K, V> map) {
+        return new TrieSpliterator<K, V, V>(map,
+            (array, from, to) -> new ValuesIterator<>(map.iterator(array, from, to)),
+            Spliterator.CONCURRENT | Spliterator.NONNULL);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * An atomic replacement of the roots of a number of {@link MutableTrieMap}s, used by {@link ShardedTrieMap} to take
+ * snapshots of, and to clear, all of its shards in one step. This is a multi-root variant of the RDCSS protocol used by
+ * {@link MutableTrieMap} itself.
+ *
+ * <p>This descriptor is first installed as the root of each shard, in order. Once all of them have been installed,
+ * a new root is prepared for each shard and the outcome is decided by a single compare-and-set. Finally the descriptor
+ * is replaced by either the new root or the original root in each shard. Threads encountering the descriptor, whether
+ * while starting an operation or while committing a GCAS, help complete it.
+ *
+ * <p>New roots are not fixed up front, as updates may keep committing on a shard until this descriptor has been
+ * installed there. They are prepared from the main nodes the original roots have once all shards have been claimed:
+ * from then on no GCAS can commit on them without this replacement having been decided first. Pending GCASes are
+ * therefore rolled back rather than completed, and the replacement linearizes at the point where it has been decided.
+ * Concurrent updates thus never make it fail. Only another replacement claiming a shard first does, in which case that
+ * replacement makes progress and the caller needs to retry with a new descriptor.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+final class RootSwap<K, V> implements MutableTrieMap.Root<K, V> {
+    private enum Status {
+        UNDECIDED,
+        SUCCEEDED,
+        FAILED
+    }
+
+    private static final VarHandle STATUS_VH;
+    private static final VarHandle NEXT_VH = MethodHandles.arrayElementVarHandle(INode[].class);
+
+    static {
+        try {
+            STATUS_VH = MethodHandles.lookup().findVarHandle(RootSwap.class, "status", Status.class);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final MutableTrieMap<K, V>[] shards;
+    private final INode<K, V>[] prev;
+    // Generation of new roots
+    private final Gen gen;
+    // Whether new roots retain the mappings of the original roots, or are empty
+    private final boolean retain;
+    // New roots, prepared once we have been installed in all shards. Never accessed directly, only through NEXT_VH.
+    private final INode<K, V>[] next;
+
+    @SuppressFBWarnings(value = "UUF_UNUSED_FIELD",
+        justification = "https://github.com/spotbugs/spotbugs/issues/2749")
+    // Never accessed directly, always go through STATUS_VH
+    private volatile Status status;
+
+    /**
+     * Create a new replacement of the roots of specified shards.
+     *
+     * @param shards shards to update
+     * @param prev current roots of the shards
+     * @param gen generation of the new roots
+     * @param retain {@code true} if the new roots should retain the mappings of the current roots, {@code false} if
+     *               they should be empty
+     */
+    @SuppressWarnings("unchecked")
+    RootSwap(final MutableTrieMap<K, V>[] shards, final INode<K, V>[] prev, final Gen gen, final boolean retain) {
+        this.shards = shards;
+        this.prev = prev;
+        this.gen = gen;
+        this.retain = retain;
+        next = new INode[shards.length];
+        STATUS_VH.setRelease(this, Status.UNDECIDED);
+    }
+
+    /**
+     * Execute this replacement.
+     *
+     * @return {@code true} if the roots have been replaced
+     */
+    boolean execute() {
+        return help() == Status.SUCCEEDED;
+    }
+
+    /**
+     * Complete this replacement on behalf of a thread which has encountered it as the root of a shard.
+     *
+     * @param shard the shard
+     * @return the root of the shard once this replacement has been completed
+     */
+    INode<K, V> complete(final MutableTrieMap<K, V> shard) {
+        final var outcome = help();
+
+        for (int i = 0; i < shards.length; i++) {
+            if (shards[i] == shard) {
+                return outcome == Status.SUCCEEDED ? next(i) : prev[i];
+            }
+        }
+        throw new VerifyException("Shard " + shard + " is not part of " + this);
+    }
+
+    private Status help() {
+        var outcome = (Status) STATUS_VH.getAcquire(this);
+        if (outcome == Status.UNDECIDED) {
+            outcome = decide(install() && prepare() ? Status.SUCCEEDED : Status.FAILED);
+        }
+        finish(outcome);
+        return outcome;
+    }
+
+    private boolean install() {
+        for (int i = 0; i < shards.length; i++) {
+            // Do not reinstall ourselves into shards we have already been removed from
+            if (STATUS_VH.getAcquire(this) != Status.UNDECIDED) {
+                return false;
+            }
+            final var witness = shards[i].casRoot(prev[i], this);
+            if (witness != prev[i] && witness != this) {
+                // The shard has moved on
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean prepare() {
+        // We are installed in all shards, hence committed main nodes of the original roots cannot change until we have
+        // been decided and any GCAS which has not been committed yet can be rolled back. All threads preparing a root
+        // therefore observe the same main node and the first one to publish its root wins.
+        for (int i = 0; i < shards.length; i++) {
+            // Do not roll back updates on behalf of an outdated attempt
+            if (STATUS_VH.getAcquire(this) != Status.UNDECIDED) {
+                return false;
+            }
+            if (NEXT_VH.getAcquire(next, i) == null) {
+                final var main = retain ? prev[i].rollbackRead(shards[i]) : new CNode<K, V>(gen);
+                NEXT_VH.compareAndSet(next, i, null, new INode<>(gen, main));
+            }
+        }
+        return true;
+    }
+
+    private void finish(final Status outcome) {
+        for (int i = 0; i < shards.length; i++) {
+            shards[i].casRoot(this, outcome == Status.SUCCEEDED ? next(i) : prev[i]);
+        }
+    }
+
+    private INode<K, V> next(final int index) {
+        return (INode<K, V>) NEXT_VH.getAcquire(next, index);
+    }
+
+    private Status decide(final Status proposed) {
+        final var witness = (Status) STATUS_VH.compareAndExchange(this, Status.UNDECIDED, proposed);
+        return witness == Status.UNDECIDED ? proposed : witness;
+    }
+}
@@ -19,16 +19,12 @@ import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 
 record SNode<K, V>(@NonNull K key, @NonNull V value, int hc) implements Branch<K, V>, EntryNode<K, V> {
-    SNode(final TNode<K, V> tn) {
-        this(tn.key, tn.value, tn.hc);
+    @Nullable V lookup(final Equivalence<? super K> equiv, final int otherHc, final K otherKey) {
+        return matches(equiv, otherHc, otherKey) ? value : null;
     }
 
-    @Nullable V lookup(final int otherHc, final K otherKey) {
-        return matches(otherHc, otherKey) ? value : null;
-    }
-
-    boolean matches(final int otherHc, final Object otherKey) {
-        return hc == otherHc && otherKey.equals(key);
+    boolean matches(final Equivalence<? super K> equiv, final int otherHc, final K otherKey) {
+        return hc == otherHc && equiv.equivalent(otherKey, key);
     }
 
     @Override
@@ -52,7 +52,7 @@ final class SerializationProxy implements Externalizable {
 
     @Override
     public void writeExternal(final ObjectOutput out) throws IOException {
-        out.writeObject(Equivalence.Equals.INSTANCE);
+        out.writeObject(map.equiv);
         out.writeInt(map.size());
         for (var e : map.entrySet()) {
             out.writeObject(e.getKey());
@@ -64,11 +64,12 @@ final class SerializationProxy implements Externalizable {
     @Override
     public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
         final var eqObj = in.readObject();
-        if (!(eqObj instanceof Equivalence)) {
+        if (!(eqObj instanceof Equivalence<?> equiv)) {
             throw new InvalidObjectException("Expected Equivalence object instead of " + eqObj);
         }
 
-        final var tmp = new MutableTrieMap<>();
+        @SuppressWarnings("unchecked")
+        final var tmp = new MutableTrieMap<>((Equivalence<Object>) equiv);
         final int size = in.readInt();
         if (size < 0) {
             throw new StreamCorruptedException("Expected non-negative size instead of " + size);
@@ -78,7 +79,7 @@ final class SerializationProxy implements Externalizable {
             final var k = requireNonNull(in.readObject());
             final var v = requireNonNull(in.readObject());
             final var r = tmp.readRoot();
-            if (!r.insert(tmp, r.gen, TrieMap.computeHash(k), k, v, 0, null)) {
+            if (!r.insert(tmp, r.gen, tmp.hash(k), k, v, 0, null)) {
                 throw new VerifyException("Concurrent modification during serialization");
             }
         }
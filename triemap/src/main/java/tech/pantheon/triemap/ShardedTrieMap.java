@@ -0,0 +1,429 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import org.eclipse.jdt.annotation.NonNull;
+
+/**
+ * A concurrent map split into a number of {@link MutableTrieMap} shards, each holding the keys whose mixed hashes share
+ * the same top bits. Each shard has its own root, hence updates to keys in different shards never contend with each
+ * other, not even when renewing the root after a snapshot has been taken.
+ *
+ * <p>All shards share the same generation. {@link #snapshot()} moves all of them to a new generation in one atomic
+ * step, hence it provides a consistent point-in-time view of the entire map. The same holds for {@link #clear()}.
+ * Operations on individual keys are linearizable, as are snapshots. Iteration is weakly consistent.
+ *
+ * <p>Keys are compared using an {@link Equivalence}, which also selects their shard. It can be specified, along with
+ * other properties of the shards, through {@link TrieMap.Builder#buildSharded(int)}.
+ *
+ * <p>This implementation does not support null keys nor null values.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+public final class ShardedTrieMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+    // Maximum number of shards: each snapshot needs to visit every one of them
+    private static final int MAX_SHARDS = 1024;
+    // 2^32 divided by the golden ratio, used to select shards
+    private static final int GOLDEN_RATIO = 0x9E3779B9;
+    // By default we use a power of two greater than or equal to the number of CPUs
+    private static final int DEFAULT_SHARDS =
+        Math.min(MAX_SHARDS, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    private final TrieMap<K, V>[] shards;
+    // Same as shards if this map is mutable, null if it is a snapshot
+    private final MutableTrieMap<K, V>[] mutableShards;
+    // Shift of a hash yielding the index of its shard
+    private final int shift;
+
+    private EntrySet entrySet;
+
+    private ShardedTrieMap(final TrieMap<K, V>[] shards, final MutableTrieMap<K, V>[] mutableShards) {
+        this.shards = shards;
+        this.mutableShards = mutableShards;
+        shift = Integer.SIZE - Integer.numberOfTrailingZeros(shards.length);
+    }
+
+    /**
+     * Create a new {@link ShardedTrieMap} with a default number of shards, which is derived from the number of
+     * available processors.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @return A new {@link ShardedTrieMap}.
+     */
+    public static <K, V> ShardedTrieMap<K, V> create() {
+        return create(DEFAULT_SHARDS);
+    }
+
+    /**
+     * Create a new {@link ShardedTrieMap} with the specified number of shards.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param shards number of shards, must be a power of two, at most 1024
+     * @return A new {@link ShardedTrieMap}.
+     * @throws IllegalArgumentException if {@code shards} is not a power of two, or is greater than 1024
+     */
+    public static <K, V> ShardedTrieMap<K, V> create(final int shards) {
+        return create(shards, new TrieMap.Options<>(Equivalence.equals()), 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> ShardedTrieMap<K, V> create(final int shards, final TrieMap.Options<K> options,
+            final int expectedSize) {
+        if (shards <= 0 || shards > MAX_SHARDS || Integer.bitCount(shards) != 1) {
+            throw new IllegalArgumentException("Invalid number of shards " + shards);
+        }
+
+        // All shards start off in the same generation, sharing its entry counter
+        final var gen = new Gen();
+        final var mutable = (MutableTrieMap<K, V>[]) new MutableTrieMap[shards];
+        for (int i = 0; i < shards; i++) {
+            mutable[i] = new MutableTrieMap<>(options, MutableTrieMap.newRootNode(gen, expectedSize / shards));
+        }
+        return new ShardedTrieMap<>(mutable, mutable);
+    }
+
+    /**
+     * Returns a read-only snapshot of this map. This operation is linearizable: the snapshot reflects the state of all
+     * shards at a single point in time. As with {@link MutableTrieMap#immutableSnapshot()}, the work of taking the
+     * snapshot is distributed across subsequent updates of this map, which need to renew their paths in every shard.
+     *
+     * <p>Taking the snapshot needs to briefly claim all shards at once. Updates completing in the meantime are part of
+     * the snapshot and updates encountering a claimed shard help the snapshot complete, hence they never make it fail.
+     * Only a concurrent snapshot or {@link #clear()} claiming a shard first can do that, in which case the snapshot is
+     * retried once the other operation has completed. The same holds for {@link #clear()}.
+     *
+     * @return A read-only snapshot of this map
+     */
+    @SuppressWarnings("unchecked")
+    public ShardedTrieMap<K, V> snapshot() {
+        final var local = mutableShards;
+        if (local == null) {
+            return this;
+        }
+
+        final int size = local.length;
+        final var prev = (INode<K, V>[]) new INode[size];
+        for (int restarts = 0; ; Backoff.backoff(++restarts)) {
+            readRoots(prev);
+            if (new RootSwap<>(local, prev, new Gen(prev[0].gen.entries), true).execute()) {
+                final var frozen = (TrieMap<K, V>[]) new TrieMap[size];
+                for (int i = 0; i < size; i++) {
+                    frozen[i] = new ImmutableTrieMap<>(local[i].options, prev[i]);
+                }
+                return new ShardedTrieMap<>(frozen, null);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of mappings in this map. Unlike {@link #size()}, this method is not limited to
+     * {@link Integer#MAX_VALUE} and does not need to take a snapshot, hence it is much cheaper to invoke. The value
+     * returned is an estimate: it may not reflect concurrent modifications.
+     *
+     * @return the number of mappings
+     */
+    public long mappingCount() {
+        if (mutableShards != null) {
+            // All shards share the same entry counter
+            return shards[0].mappingCount();
+        }
+
+        long ret = 0;
+        for (var shard : shards) {
+            ret += shard.mappingCount();
+        }
+        return ret;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation does not take a snapshot. For a mutable map the size is derived from
+     * {@link #mappingCount()}, hence it may not reflect modifications which are in progress, but it is exact once they
+     * have completed.
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, mappingCount());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mappingCount() == 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void clear() {
+        final var local = mutableShards;
+        if (local == null) {
+            throw ImmutableTrieMap.unsupported();
+        }
+
+        final var prev = (INode<K, V>[]) new INode[local.length];
+        for (int restarts = 0; ; Backoff.backoff(++restarts)) {
+            readRoots(prev);
+            if (new RootSwap<>(local, prev, new Gen(), false).execute()) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return shard(key).containsKey(key);
+    }
+
+    @Override
+    public V get(final Object key) {
+        return shard(key).get(key);
+    }
+
+    @Override
+    public V put(final K key, final V value) {
+        return shard(key).put(key, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation splits the mappings by their shards and inserts them into each shard using
+     * {@link MutableTrieMap#putAll(Map)}. Each mapping is inserted atomically, but the operation as a whole is not
+     * atomic.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void putAll(final Map<? extends K, ? extends V> map) {
+        final var split = (Map<K, V>[]) new Map[shards.length];
+        for (var entry : map.entrySet()) {
+            final K key = requireNonNull(entry.getKey());
+            final int index = shardIndex(key);
+            var shardMap = split[index];
+            if (shardMap == null) {
+                split[index] = shardMap = new LinkedHashMap<>();
+            }
+            shardMap.put(key, requireNonNull(entry.getValue()));
+        }
+
+        for (int i = 0; i < split.length; i++) {
+            final var shardMap = split[i];
+            if (shardMap != null) {
+                shards[i].putAll(shardMap);
+            }
+        }
+    }
+
+    @Override
+    public V putIfAbsent(final K key, final V value) {
+        return shard(key).putIfAbsent(key, value);
+    }
+
+    @Override
+    public V remove(final Object key) {
+        return shard(key).remove(key);
+    }
+
+    @Override
+    public boolean remove(final Object key, final Object value) {
+        return shard(key).remove(key, value);
+    }
+
+    @Override
+    public boolean replace(final K key, final V oldValue, final V newValue) {
+        return shard(key).replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public V replace(final K key, final V value) {
+        return shard(key).replace(key, value);
+    }
+
+    @Override
+    public V computeIfAbsent(final K key, final Function<? super K, ? extends V> mappingFunction) {
+        return shard(key).computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public V computeIfPresent(final K key, final BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return shard(key).computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public V compute(final K key, final BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return shard(key).compute(key, remappingFunction);
+    }
+
+    @Override
+    public V merge(final K key, final V value, final BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        return shard(key).merge(key, value, remappingFunction);
+    }
+
+    @Override
+    public void forEach(final BiConsumer<? super K, ? super V> action) {
+        requireNonNull(action);
+        for (var shard : shards) {
+            shard.forEach(action);
+        }
+    }
+
+    @Override
+    public void replaceAll(final BiFunction<? super K, ? super V, ? extends V> function) {
+        requireNonNull(function);
+        for (var shard : shards) {
+            shard.replaceAll(function);
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        final EntrySet ret;
+        return (ret = entrySet) != null ? ret : (entrySet = new EntrySet());
+    }
+
+    // Visible for testing
+    @SuppressWarnings("unchecked")
+    int shardIndex(final @NonNull Object key) {
+        // All shards share the same equivalence, hence any of them can hash the key. TrieMap.hash() does not propagate
+        // lower bits upwards, hence top bits of hashes of small numbers are all zeroes. Multiplying by the golden ratio
+        // mixes all bits into the top ones.
+        return (int) (Integer.toUnsignedLong(shards[0].hash((K) key) * GOLDEN_RATIO) >>> shift);
+    }
+
+    private TrieMap<K, V> shard(final Object key) {
+        return shards[shardIndex(requireNonNull(key))];
+    }
+
+    // Read the current roots of all shards
+    private void readRoots(final INode<K, V>[] roots) {
+        final var local = mutableShards;
+        for (int i = 0; i < local.length; i++) {
+            roots[i] = local[i].readRoot();
+        }
+    }
+
+    /**
+     * Weakly-consistent view of the mappings in a {@link ShardedTrieMap}, concatenating views of its shards.
+     */
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new ShardIterator();
+        }
+
+        @Override
+        public Spliterator<Entry<K, V>> spliterator() {
+            return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.DISTINCT | Spliterator.NONNULL
+                | (mutableShards != null ? Spliterator.CONCURRENT : Spliterator.IMMUTABLE));
+        }
+
+        @Override
+        @SuppressWarnings("checkstyle:parameterName")
+        public boolean contains(final Object o) {
+            if (!(o instanceof Entry<?, ?> entry)) {
+                return false;
+            }
+
+            final var key = entry.getKey();
+            if (key == null) {
+                return false;
+            }
+            final var value = entry.getValue();
+            return value != null && value.equals(get(key));
+        }
+
+        @Override
+        @SuppressWarnings("checkstyle:parameterName")
+        public boolean remove(final Object o) {
+            if (!(o instanceof Entry<?, ?> entry)) {
+                return false;
+            }
+
+            final var key = entry.getKey();
+            if (key == null) {
+                return false;
+            }
+            final var value = entry.getValue();
+            return value != null && ShardedTrieMap.this.remove(key, value);
+        }
+
+        @Override
+        public int size() {
+            return ShardedTrieMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            ShardedTrieMap.this.clear();
+        }
+    }
+
+    /**
+     * Iterator over the mappings of all shards, one shard after another.
+     */
+    private final class ShardIterator implements Iterator<Entry<K, V>> {
+        private Iterator<Entry<K, V>> current = Collections.emptyIterator();
+        private Iterator<Entry<K, V>> last;
+        private int nextShard;
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (nextShard == shards.length) {
+                    return false;
+                }
+                current = shards[nextShard++].entrySet().iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = current;
+            return current.next();
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            last.remove();
+            last = null;
+        }
+    }
+}
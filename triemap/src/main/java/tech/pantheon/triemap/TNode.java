@@ -18,38 +18,32 @@ package tech.pantheon.triemap;
 import org.eclipse.jdt.annotation.NonNull;
 
 final class TNode<K, V> extends MainNode<K, V> implements EntryNode<K, V> {
-    final @NonNull K key;
-    final @NonNull V value;
-    final int hc;
+    // The entry being entombed. It is resurrected as is, hence entombing and resurrecting does not copy it.
+    final @NonNull SNode<K, V> sn;
 
-    // Visible for testing
-    TNode(final CNode<K, V> prev, final @NonNull K key, final @NonNull V value, final int hc) {
+    TNode(final CNode<K, V> prev, final SNode<K, V> sn) {
         super(prev);
-        this.key = key;
-        this.value = value;
-        this.hc = hc;
+        this.sn = sn;
     }
 
-    TNode(final CNode<K, V> prev, final SNode<K, V> sn) {
-        this(prev, sn.key(), sn.value(), sn.hc());
+    // Visible for testing
+    TNode(final CNode<K, V> prev, final @NonNull K key, final @NonNull V value, final int hc) {
+        this(prev, new SNode<>(key, value, hc));
     }
 
     TNode(final LNode<K, V> prev, final @NonNull K key, final @NonNull V value, final int hc) {
         super(prev);
-        this.key = key;
-        this.value = value;
-        this.hc = hc;
+        sn = new SNode<>(key, value, hc);
     }
 
-
     @Override
     public K key() {
-        return key;
+        return sn.key();
     }
 
     @Override
     public V value() {
-        return value;
+        return sn.value();
     }
 
     @Override
@@ -64,16 +58,16 @@ final class TNode<K, V> extends MainNode<K, V> implements EntryNode<K, V> {
 
     @Override
     public int hashCode() {
-        return AbstractEntry.hashCode(key, value);
+        return AbstractEntry.hashCode(sn.key(), sn.value());
     }
 
     @Override
     public boolean equals(final Object obj) {
-        return AbstractEntry.equals(obj, key, value);
+        return AbstractEntry.equals(obj, sn.key(), sn.value());
     }
 
     @Override
     public String toString() {
-        return AbstractEntry.toString(key, value);
+        return AbstractEntry.toString(sn.key(), sn.value());
     }
 }
@@ -0,0 +1,231 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import org.eclipse.jdt.annotation.NonNull;
+
+/**
+ * A map of {@code long} counters, built on top of a {@link MutableTrieMap}. Counters are updated lock-free, just as
+ * with {@code map.merge(key, delta, Long::sum)}. When updates to a particular counter start failing due to contention,
+ * the counter is inflated into multiple stripes, each of which is a separate mapping in the trie, in a fashion similar
+ * to {@link java.util.concurrent.atomic.LongAdder}. Concurrent updates are then spread across the stripes.
+ *
+ * <p>Since each stripe is an immutable mapping in the trie, {@link #snapshot()} provides a consistent point-in-time
+ * view of all counters, including those which are striped.
+ *
+ * @param <K> the type of keys
+ */
+public final class TrieCounterMap<K> {
+    /**
+     * A key in the backing map: a stripe of a counter.
+     */
+    private record Cell<K>(@NonNull K key, int stripe) {
+        // Nothing else
+    }
+
+    // Stripe of the cell holding the number of stripes of an inflated counter. Keeping it in the same map as the
+    // stripes themselves allows us to update them atomically.
+    private static final int WIDTH = -1;
+    // By default we allow up to a power of two greater than or equal to the number of CPUs
+    private static final int MAX_STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+
+    private final MutableTrieMap<Cell<K>, Long> counts = TrieMap.create();
+    private final int maxStripes;
+
+    // Visible for testing
+    TrieCounterMap(final int maxStripes) {
+        this.maxStripes = maxStripes;
+    }
+
+    /**
+     * Create a new {@link TrieCounterMap}.
+     *
+     * @param <K> key type
+     * @return A new {@link TrieCounterMap}.
+     */
+    public static <K> TrieCounterMap<K> create() {
+        return new TrieCounterMap<>(MAX_STRIPES);
+    }
+
+    /**
+     * Increment the counter for a key by one.
+     *
+     * @param key counter key
+     * @throws NullPointerException if {@code key} is null
+     */
+    public void increment(final K key) {
+        add(key, 1);
+    }
+
+    /**
+     * Add a value to the counter for a key. Counters which do not exist are created with an initial value of zero.
+     *
+     * @param key counter key
+     * @param delta value to add
+     * @throws NullPointerException if {@code key} is null
+     */
+    public void add(final K key, final long delta) {
+        final var k = requireNonNull(key);
+        while (true) {
+            final int width = width(k);
+            final int stripe = width == 1 ? 0 : ThreadLocalRandom.current().nextInt(width);
+            final var adder = new Adder();
+            final var cell = new Cell<>(k, stripe);
+            // Only the first stripe may be created here, all others are created when the counter is inflated. That
+            // way remove() can rely on each stripe below the width being present.
+            if (stripe == 0) {
+                counts.merge(cell, delta, adder::add);
+            } else if (counts.computeIfPresent(cell, (c, prev) -> adder.add(prev, delta)) == null) {
+                // The counter has been removed concurrently, start from scratch
+                continue;
+            }
+            if (adder.invocations > 1) {
+                // Our update has been retried due to a concurrent modification: spread future updates across more
+                // stripes, just as LongAdder does
+                inflate(k, width);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Return the current value of the counter for a key. Similar to
+     * {@link java.util.concurrent.atomic.LongAdder#sum()}, the returned value is not an atomic snapshot if the counter
+     * is being concurrently updated. Use {@link #snapshot()} for a consistent view.
+     *
+     * @param key counter key
+     * @return current value, or zero if the counter does not exist
+     * @throws NullPointerException if {@code key} is null
+     */
+    public long sum(final K key) {
+        final var k = requireNonNull(key);
+        final int width = width(k);
+        long ret = 0;
+        for (int i = 0; i < width; i++) {
+            final var count = counts.get(new Cell<>(k, i));
+            if (count != null) {
+                ret += count;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Atomically remove the counter for a key.
+     *
+     * @param key counter key
+     * @return the value of the counter, or zero if it did not exist
+     * @throws NullPointerException if {@code key} is null
+     */
+    public long remove(final K key) {
+        final var k = requireNonNull(key);
+        final var widthCell = new Cell<>(k, WIDTH);
+        while (true) {
+            // We need to validate every stripe, as well as the width, so that no concurrent add() or inflation can
+            // survive the removal
+            final var expected = new HashMap<Cell<K>, Long>();
+            final var storedWidth = counts.get(widthCell);
+            final int width;
+            if (storedWidth != null) {
+                expected.put(widthCell, storedWidth);
+                width = storedWidth.intValue();
+            } else {
+                width = 1;
+            }
+
+            long ret = 0;
+            boolean missing = false;
+            for (int i = 0; i < width; i++) {
+                final var cell = new Cell<>(k, i);
+                final var count = counts.get(cell);
+                if (count != null) {
+                    expected.put(cell, count);
+                    ret += count;
+                } else if (storedWidth != null) {
+                    // The first stripe of an inflated counter has been removed while it was being inflated. Recreate
+                    // it, so we can validate it.
+                    counts.putIfAbsent(cell, 0L);
+                    missing = true;
+                }
+            }
+            if (!missing && (expected.isEmpty() || counts.compareAndSet(expected, Map.of()))) {
+                return ret;
+            }
+        }
+    }
+
+    /**
+     * Return a consistent point-in-time view of all counters. This operation is lock-free and linearizable.
+     *
+     * @return An unmodifiable map of counter values
+     */
+    public Map<K, Long> snapshot() {
+        final var ret = new HashMap<K, Long>();
+        for (var entry : counts.immutableSnapshot().entrySet()) {
+            final var cell = entry.getKey();
+            if (cell.stripe() != WIDTH) {
+                ret.merge(cell.key(), entry.getValue(), Long::sum);
+            }
+        }
+        return Collections.unmodifiableMap(ret);
+    }
+
+    // Visible for testing
+    long cellCount() {
+        return counts.mappingCount();
+    }
+
+    private int width(final @NonNull K key) {
+        final var width = counts.get(new Cell<>(key, WIDTH));
+        return width == null ? 1 : width.intValue();
+    }
+
+    private void inflate(final @NonNull K key, final int width) {
+        if (width >= maxStripes) {
+            return;
+        }
+
+        // Atomically publish the new width along with the new stripes. If this fails, someone else has already
+        // inflated or removed the counter.
+        final var widthCell = new Cell<>(key, WIDTH);
+        final int next = width * 2;
+        final var update = new HashMap<Cell<K>, Long>();
+        update.put(widthCell, (long) next);
+        for (int i = width; i < next; i++) {
+            update.put(new Cell<>(key, i), 0L);
+        }
+        counts.compareAndSet(width == 1 ? Map.of() : Map.of(widthCell, (long) width), update);
+    }
+
+    /**
+     * Sums a stripe with a delta, counting how many times it has been invoked. Multiple invocations indicate that the
+     * update has been retried due to a concurrent modification.
+     */
+    private static final class Adder {
+        int invocations;
+
+        long add(final long prev, final long delta) {
+            invocations++;
+            return prev + delta;
+        }
+    }
+}
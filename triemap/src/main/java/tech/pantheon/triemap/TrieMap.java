@@ -18,16 +18,26 @@ package tech.pantheon.triemap;
 import static java.util.Objects.requireNonNull;
 import static tech.pantheon.triemap.Result.RESTART;
 
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.Serializable;
+import java.time.Duration;
 import java.util.AbstractMap;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 
 /**
  * This is a port of Scala's TrieMap class from the Scala Collections library. This implementation does not support
  * null keys nor null values.
  *
+ * <p>Keys are placed according to their {@link Object#hashCode()}, which is consumed five bits per level. Keys whose
+ * hash codes are equal are kept together in a collision node at the bottom of the trie. Collision nodes of keys which
+ * are {@link Comparable} to their own class are searched in {@code O(log n)}, all others are searched linearly.
+ *
  * @author Aleksandar Prokopec (original Scala implementation)
  * @author Roman Levenstein (original Java 6 port)
  * @author Robert Varga
@@ -45,8 +55,164 @@ public abstract sealed class TrieMap<K, V> extends AbstractMap<K, V> implements
     //       AbstractMap and lower our memory footprint.
     private transient AbstractKeySet<K, ?> theKeySet;
 
-    TrieMap() {
-        // Hidden on purpose
+    /**
+     * Properties a map has been created with. They are retained by snapshots, so that a mutable snapshot behaves just
+     * like the map it has been taken from. Only the equivalence is retained across serialization.
+     *
+     * @param <K> the type of keys
+     */
+    record Options<K>(
+            @NonNull Equivalence<? super K> equiv,
+            boolean combining,
+            long snapshotWindow,
+            @Nullable Executor compactionExecutor,
+            long compactionThreshold) {
+        Options {
+            requireNonNull(equiv);
+        }
+
+        Options(final Equivalence<? super K> equiv) {
+            this(equiv, false, 0, null, 0);
+        }
+    }
+
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "Handled through writeReplace")
+    final transient Options<K> options;
+    // Equivalence of keys, cached from options
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "Handled through writeReplace")
+    final transient Equivalence<? super K> equiv;
+
+    TrieMap(final Options<K> options) {
+        this.options = requireNonNull(options);
+        equiv = options.equiv();
+    }
+
+    /**
+     * A builder of {@link MutableTrieMap}s. Unlike the various {@code create} methods of {@link TrieMap}, it allows
+     * their properties to be combined, for example to create a map which is keyed by a custom {@link Equivalence} and
+     * combines contended updates.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     */
+    public static final class Builder<K, V> {
+        private Equivalence<? super K> equiv = Equivalence.equals();
+        private int expectedSize;
+        private boolean combining;
+        private long snapshotWindow;
+        private @Nullable Executor compactionExecutor;
+        private long compactionThreshold;
+
+        Builder() {
+            // Hidden on purpose
+        }
+
+        /**
+         * Compare keys using specified {@link Equivalence}, as described in {@link TrieMap#create(Equivalence)}.
+         *
+         * @param equivalence key equivalence
+         * @return This builder
+         * @throws NullPointerException if {@code equivalence} is null
+         */
+        public Builder<K, V> equivalence(final Equivalence<? super K> equivalence) {
+            equiv = requireNonNull(equivalence);
+            return this;
+        }
+
+        /**
+         * Size the map for the specified number of mappings, as described in {@link TrieMap#create(int)}.
+         *
+         * @param size expected number of mappings
+         * @return This builder
+         * @throws IllegalArgumentException if {@code size} is negative
+         */
+        public Builder<K, V> expectedSize(final int size) {
+            if (size < 0) {
+                throw new IllegalArgumentException("Negative expected size " + size);
+            }
+            expectedSize = size;
+            return this;
+        }
+
+        /**
+         * Combine contended updates, as described in {@link TrieMap#createCombining()}.
+         *
+         * @return This builder
+         */
+        public Builder<K, V> combining() {
+            combining = true;
+            return this;
+        }
+
+        /**
+         * Coalesce read-only snapshots, as described in {@link TrieMap#createCoalescing(Duration)}.
+         *
+         * @param window time window during which snapshots are shared
+         * @return This builder
+         * @throws IllegalArgumentException if {@code window} is negative
+         */
+        public Builder<K, V> coalescing(final Duration window) {
+            if (window.isNegative()) {
+                throw new IllegalArgumentException("Negative window " + window);
+            }
+            snapshotWindow = window.toNanos();
+            return this;
+        }
+
+        /**
+         * Compact the map in the background, as described in {@link TrieMap#createCompacting(Executor, long)}.
+         *
+         * @param executor executor to run compactions
+         * @param threshold number of removals triggering a compaction
+         * @return This builder
+         * @throws NullPointerException if {@code executor} is null
+         * @throws IllegalArgumentException if {@code threshold} is not positive
+         */
+        public Builder<K, V> compacting(final Executor executor, final long threshold) {
+            if (threshold <= 0) {
+                throw new IllegalArgumentException("Non-positive threshold " + threshold);
+            }
+            compactionExecutor = requireNonNull(executor);
+            compactionThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Create a new {@link MutableTrieMap} with the properties specified so far.
+         *
+         * @return A new {@link MutableTrieMap}.
+         */
+        public MutableTrieMap<K, V> build() {
+            return new MutableTrieMap<>(options(), MutableTrieMap.newRootNode(new Gen(), expectedSize));
+        }
+
+        /**
+         * Create a new {@link ShardedTrieMap} with the specified number of shards, each of which has the properties
+         * specified so far. The expected size is split evenly across the shards. Each shard combines its own contended
+         * updates and is compacted on its own, but {@link ShardedTrieMap#snapshot()} is never coalesced.
+         *
+         * @param shards number of shards, must be a power of two, at most 1024
+         * @return A new {@link ShardedTrieMap}.
+         * @throws IllegalArgumentException if {@code shards} is not a power of two, or is greater than 1024
+         */
+        public ShardedTrieMap<K, V> buildSharded(final int shards) {
+            return ShardedTrieMap.create(shards, options(), expectedSize);
+        }
+
+        private Options<K> options() {
+            return new Options<>(equiv, combining, snapshotWindow, compactionExecutor, compactionThreshold);
+        }
+    }
+
+    /**
+     * Create a new {@link Builder} of {@link MutableTrieMap}s.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @return A new {@link Builder}.
+     */
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
     }
 
     /**
@@ -57,16 +223,109 @@ public abstract sealed class TrieMap<K, V> extends AbstractMap<K, V> implements
      * @return A new {@link MutableTrieMap}.
      */
     public static <K, V> MutableTrieMap<K, V> create() {
-        return new MutableTrieMap<>();
+        return new MutableTrieMap<>(Equivalence.equals());
+    }
+
+    /**
+     * Create a new {@link MutableTrieMap}, sized for the specified number of mappings. The upper levels of the map are
+     * allocated up front, so that early updates are spread across independent nodes instead of contending on the root
+     * and repeatedly copying it while it grows.
+     *
+     * <p>This property is not retained by {@link #clear()}, nor across serialization.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param expectedSize expected number of mappings
+     * @return A new {@link MutableTrieMap}.
+     * @throws IllegalArgumentException if {@code expectedSize} is negative
+     */
+    public static <K, V> MutableTrieMap<K, V> create(final int expectedSize) {
+        return TrieMap.<K, V>builder().expectedSize(expectedSize).build();
+    }
+
+    /**
+     * Create a new {@link MutableTrieMap}, which compares its keys using specified {@link Equivalence}. This allows,
+     * for example, keying a map by object identity through {@link Equivalence#identity()}, or by contents of arrays
+     * without wrapping them.
+     *
+     * <p>This property is retained by snapshots and across serialization, provided the equivalence is serializable.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param equivalence key equivalence
+     * @return A new {@link MutableTrieMap}.
+     * @throws NullPointerException if {@code equivalence} is null
+     */
+    public static <K, V> MutableTrieMap<K, V> create(final Equivalence<? super K> equivalence) {
+        return TrieMap.<K, V>builder().equivalence(equivalence).build();
+    }
+
+    /**
+     * Create a new {@link MutableTrieMap}, which combines contended updates. Single-key updates which repeatedly fail
+     * to be applied due to concurrent modification are handed off to one of the contending threads, which applies all
+     * of them in one step. This reduces wasted work when many threads update a few hot keys, at the cost of threads
+     * waiting for each other: update functions invoked by {@code compute()} and similar methods may be executed by a
+     * different thread than the one invoking the method, and should therefore be short and non-blocking.
+     *
+     * <p>This property is retained by snapshots, but not across serialization.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @return A new {@link MutableTrieMap}.
+     */
+    public static <K, V> MutableTrieMap<K, V> createCombining() {
+        return TrieMap.<K, V>builder().combining().build();
+    }
+
+    /**
+     * Create a new {@link MutableTrieMap}, which coalesces read-only snapshots. Calls to
+     * {@link MutableTrieMap#immutableSnapshot()} share the last snapshot taken for the specified time window, even if
+     * the map has been modified since. Each snapshot requires subsequent updates to rewrite the paths they modify,
+     * hence this reduces the amount of work done by updates when snapshots are taken frequently, at the cost of the
+     * returned snapshots reflecting state which may be up to {@code window} old.
+     *
+     * <p>Only {@link MutableTrieMap#immutableSnapshot()} is affected. All other operations, including {@link #size()},
+     * iteration, {@link #mutableSnapshot()} and serialization, observe the current state of the map.
+     *
+     * <p>This property is retained by snapshots, but not across serialization.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param window time window during which snapshots are shared
+     * @return A new {@link MutableTrieMap}.
+     * @throws IllegalArgumentException if {@code window} is negative
+     */
+    public static <K, V> MutableTrieMap<K, V> createCoalescing(final Duration window) {
+        return TrieMap.<K, V>builder().coalescing(window).build();
+    }
+
+    /**
+     * Create a new {@link MutableTrieMap}, which compacts itself in the background. Removing mappings leaves behind
+     * nodes which are cleaned up lazily by subsequent operations passing through them. Each time {@code threshold}
+     * mappings have been removed, a {@link MutableTrieMap#compact()} is submitted to the specified executor, which
+     * cleans up all of them. At most one compaction is pending at any time.
+     *
+     * <p>This property is retained by snapshots, but not across serialization.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param executor executor to run compactions
+     * @param threshold number of removals triggering a compaction
+     * @return A new {@link MutableTrieMap}.
+     * @throws NullPointerException if {@code executor} is null
+     * @throws IllegalArgumentException if {@code threshold} is not positive
+     */
+    public static <K, V> MutableTrieMap<K, V> createCompacting(final Executor executor, final long threshold) {
+        return TrieMap.<K, V>builder().compacting(executor, threshold).build();
     }
 
     /**
      * Returns a snapshot of this TrieMap. This operation is lock-free and linearizable. Modification operations on
      * this Map and the returned one are isolated from each other.
      *
-     * <p>The snapshot is lazily updated - the first time some branch in the snapshot or this TrieMap are accessed,
-     * they are rewritten. This means that the work of rebuilding both the snapshot and this TrieMap is distributed
-     * across all the threads doing updates or accesses subsequent to the snapshot creation.
+     * <p>The snapshot is lazily updated - the first time some branch in the snapshot or this TrieMap is modified,
+     * it is rewritten. This means that the work of rebuilding both the snapshot and this TrieMap is distributed
+     * across all the threads doing updates subsequent to the snapshot creation. Lookups never rewrite branches.
      *
      * @return A read-write TrieMap containing the contents of this map.
      */
@@ -75,12 +334,13 @@ public abstract sealed class TrieMap<K, V> extends AbstractMap<K, V> implements
     /**
      * Returns a read-only snapshot of this TrieMap. This operation is lock-free and linearizable.
      *
-     * <p>The snapshot is lazily updated - the first time some branch of this TrieMap are accessed, it is rewritten.
-     * The work of creating the snapshot is thus distributed across subsequent updates and accesses on this TrieMap
-     * by all threads. Note that the snapshot itself is never rewritten unlike when calling {@link #mutableSnapshot()},
+     * <p>The snapshot is lazily updated - the first time some branch of this TrieMap is modified, it is rewritten.
+     * The work of creating the snapshot is thus distributed across subsequent updates on this TrieMap by all
+     * threads. Note that the snapshot itself is never rewritten unlike when calling {@link #mutableSnapshot()},
      * but the obtained snapshot cannot be modified.
      *
-     * <p>This method is used by other methods such as `size` and `iterator`.
+     * <p>This method is used by other methods such as `size`. Iterators over a mutable TrieMap do not take a snapshot
+     * and are weakly consistent instead.
      *
      * @return A read-only TrieMap containing the contents of this map.
      */
@@ -112,16 +372,16 @@ public abstract sealed class TrieMap<K, V> extends AbstractMap<K, V> implements
     @SuppressWarnings("unchecked")
     public final V get(final Object key) {
         final var k = (K) requireNonNull(key);
-        final var hc = computeHash(k);
+        final var hc = hash(k);
 
         // Keep looping as long as RESTART is being returned
-        Object res;
-        do {
+        for (int restarts = 0; ; restart(++restarts)) {
             final var root = readRoot();
-            res = root.lookup(this, root.gen, hc, k, 0, null);
-        } while (res == RESTART);
-
-        return (V) res;
+            final var res = root.lookup(this, hc, k);
+            if (res != RESTART) {
+                return (V) res;
+            }
+        }
     }
 
     @Override
@@ -148,9 +408,27 @@ public abstract sealed class TrieMap<K, V> extends AbstractMap<K, V> implements
     @Override
     public abstract V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction);
 
+    @Override
+    public abstract V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction);
+
+    @Override
+    public abstract V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction);
+
+    @Override
+    public abstract V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction);
+
     @Override
     public abstract int size();
 
+    /**
+     * Returns the number of mappings in this map. Unlike {@link #size()}, this method is not limited to
+     * {@link Integer#MAX_VALUE} and is not required to be linearizable, hence it may be cheaper to invoke. The value
+     * returned is an estimate: it may not reflect concurrent modifications.
+     *
+     * @return the number of mappings
+     */
+    public abstract long mappingCount();
+
     /* internal methods implemented by subclasses */
 
     abstract AbstractEntrySet<K, V, ?> createEntrySet();
@@ -159,8 +437,31 @@ public abstract sealed class TrieMap<K, V> extends AbstractMap<K, V> implements
 
     abstract boolean isReadOnly();
 
+    /**
+     * Return a snapshot reflecting the current state of this map. Unlike {@link #immutableSnapshot()}, this method
+     * never returns a coalesced snapshot, hence it is suitable for operations which must observe all completed
+     * modifications.
+     *
+     * @return A current snapshot
+     */
+    abstract ImmutableTrieMap<K, V> currentSnapshot();
+
     abstract INode<K, V> rdcssReadRoot(boolean abort);
 
+    /**
+     * Invoked when an operation needs to be restarted due to concurrent modification, before it is retried.
+     *
+     * @param restarts number of times the operation has been restarted so far
+     */
+    abstract void restart(int restarts);
+
+    /**
+     * Invoked when an operation has removed some mappings from this map.
+     *
+     * @param count number of mappings removed
+     */
+    abstract void removed(int count);
+
     /**
      * Return an iterator over a TrieMap.
      *
@@ -173,19 +474,52 @@ public abstract sealed class TrieMap<K, V> extends AbstractMap<K, V> implements
      */
     abstract AbstractIterator<K, V> iterator();
 
+    /**
+     * Return an iterator over a range of slots of a CNode in this TrieMap, as used by {@link TrieSpliterator}.
+     *
+     * @param array CNode slots
+     * @param from first slot, inclusive
+     * @param to last slot, exclusive
+     * @return An iterator.
+     */
+    abstract AbstractIterator<K, V> iterator(Branch<K, V>[] array, int from, int to);
+
     /* internal methods provided for subclasses */
 
     /**
-     * Return an iterator over a TrieMap. This is a read-only iterator.
+     * Return an iterator over a TrieMap. This is a read-only iterator, which is weakly consistent if this TrieMap is
+     * mutable.
      *
      * @return A read-only iterator.
      */
     final ImmutableIterator<K, V> immutableIterator() {
-        return new ImmutableIterator<>(immutableSnapshot());
+        return new ImmutableIterator<>(this, readRoot());
+    }
+
+    /**
+     * Return a read-only iterator over a range of slots of a CNode in this TrieMap.
+     *
+     * @param array CNode slots
+     * @param from first slot, inclusive
+     * @param to last slot, exclusive
+     * @return A read-only iterator.
+     */
+    final ImmutableIterator<K, V> immutableIterator(final Branch<K, V>[] array, final int from, final int to) {
+        return new ImmutableIterator<>(this, array, from, to);
+    }
+
+    /**
+     * Compute the hash of a key according to this map's {@link Equivalence}.
+     *
+     * @param key the key
+     * @return Hash of the key
+     */
+    final int hash(final K key) {
+        return spread(equiv.hash(key));
     }
 
-    static final int computeHash(final Object key) {
-        int hash = key.hashCode();
+    private static int spread(final int hashCode) {
+        int hash = hashCode;
 
         // This function ensures that hashCodes that differ only by
         // constant multiples at each bit position have a bounded
@@ -202,7 +536,7 @@ public abstract sealed class TrieMap<K, V> extends AbstractMap<K, V> implements
      */
     @java.io.Serial
     final Object writeReplace() {
-        return new SerializationProxy(immutableSnapshot(), isReadOnly());
+        return new SerializationProxy(currentSnapshot(), isReadOnly());
     }
 
     /* package-protected utility methods */
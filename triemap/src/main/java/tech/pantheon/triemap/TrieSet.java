@@ -37,6 +37,10 @@ import java.util.stream.Stream;
  * and additionally supports O(1) {@link MutableTrieSet mutable} and {@link ImmutableTrieSet immutable} isolated
  * snapshots.
  *
+ * <p>Elements are stored as keys of the backing map, all mapped to the same {@link Boolean#TRUE} instance, hence the
+ * only per-element cost is the trie node holding the element. A dedicated key-only node would not be any smaller:
+ * with the default compressed object layout the value slot occupies what would otherwise be alignment padding.
+ *
  * @param <E> the type of elements maintained by this set
  */
 public abstract sealed class TrieSet<E> implements Set<E>, Serializable permits ImmutableTrieSet, MutableTrieSet {
@@ -64,6 +68,19 @@ public abstract sealed class TrieSet<E> implements Set<E>, Serializable permits
         return new MutableTrieSet<>(TrieMap.create());
     }
 
+    /**
+     * Create a new {@link MutableTrieSet}, sized for the specified number of elements. See
+     * {@link TrieMap#create(int)} for details.
+     *
+     * @param <E> element type
+     * @param expectedSize expected number of elements
+     * @return A new {@link MutableTrieSet}.
+     * @throws IllegalArgumentException if {@code expectedSize} is negative
+     */
+    public static <E> MutableTrieSet<E> create(final int expectedSize) {
+        return new MutableTrieSet<>(TrieMap.create(expectedSize));
+    }
+
     /**
      * Returns a snapshot of this TrieSet. This operation is lock-free and linearizable. Modification operations on this
      * Set and the returned one are isolated from each other.
@@ -228,10 +245,11 @@ public abstract sealed class TrieSet<E> implements Set<E>, Serializable permits
 
         @Override
         public void writeExternal(final ObjectOutput out) throws IOException {
-            final var snap = set.immutableSnapshot();
+            // Note: not immutableSnapshot(), as that may be coalesced
+            final var snap = set.map().currentSnapshot();
             out.writeBoolean(set instanceof ImmutableTrieSet);
             out.writeInt(snap.size());
-            for (Object e : snap) {
+            for (Object e : snap.keySet()) {
                 out.writeObject(e);
             }
         }
@@ -244,7 +262,7 @@ public abstract sealed class TrieSet<E> implements Set<E>, Serializable permits
                 throw new StreamCorruptedException("Expected non-negative size instead of " + size);
             }
 
-            final var read = TrieSet.create();
+            final var read = TrieSet.create(size);
             for (int i = 0; i < size; ++i) {
                 read.add(in.readObject());
             }
@@ -0,0 +1,133 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} over a TrieMap. It walks the trie directly, without taking a snapshot, hence it is weakly
+ * consistent if the map is being concurrently modified. It covers a range of slots of a CNode and splits by dividing
+ * that range. When only a single slot holding an INode remains, it descends into that INode's CNode.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ * @param <T> the type of elements
+ */
+final class TrieSpliterator<K, V, T> implements Spliterator<T> {
+    /**
+     * Factory for iterators over a range of slots of a CNode.
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     * @param <T> the type of elements
+     */
+    @FunctionalInterface
+    interface IteratorFactory<K, V, T> {
+        Iterator<T> newIterator(Branch<K, V>[] array, int from, int to);
+    }
+
+    private final TrieMap<K, V> map;
+    private final IteratorFactory<K, V, T> factory;
+    private final int characteristics;
+
+    private Branch<K, V>[] array;
+    private int from;
+    private int to;
+    // Instantiated once we start traversing, at which point we can no longer split
+    private Iterator<T> iterator;
+
+    TrieSpliterator(final TrieMap<K, V> map, final IteratorFactory<K, V, T> factory, final int characteristics) {
+        // The root's main node is always a CNode
+        this(map, factory, characteristics, ((CNode<K, V>) map.readRoot().gcasReadNonNull(map)).array);
+    }
+
+    private TrieSpliterator(final TrieMap<K, V> map, final IteratorFactory<K, V, T> factory,
+            final int characteristics, final Branch<K, V>[] array) {
+        this(map, factory, characteristics, array, 0, array.length);
+    }
+
+    private TrieSpliterator(final TrieMap<K, V> map, final IteratorFactory<K, V, T> factory,
+            final int characteristics, final Branch<K, V>[] array, final int from, final int to) {
+        this.map = requireNonNull(map);
+        this.factory = requireNonNull(factory);
+        this.characteristics = characteristics;
+        this.array = array;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super T> action) {
+        requireNonNull(action);
+        final var it = iterator();
+        if (it.hasNext()) {
+            action.accept(it.next());
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super T> action) {
+        iterator().forEachRemaining(requireNonNull(action));
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        if (iterator != null) {
+            return null;
+        }
+
+        // Descend through INodes as long as we cover only a single slot
+        while (to - from == 1 && array[from] instanceof INode<K, V> in && in.gcasRead(map) instanceof CNode<K, V> cn) {
+            array = cn.array;
+            from = 0;
+            to = array.length;
+        }
+
+        final int len = to - from;
+        if (len < 2) {
+            return null;
+        }
+
+        final int mid = from + (len >>> 1);
+        final var prefix = new TrieSpliterator<>(map, factory, characteristics, array, from, mid);
+        from = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+
+    private Iterator<T> iterator() {
+        var it = iterator;
+        if (it == null) {
+            iterator = it = factory.newIterator(array, from, to);
+        }
+        return it;
+    }
+}
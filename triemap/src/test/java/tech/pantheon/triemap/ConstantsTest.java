@@ -26,6 +26,11 @@ class ConstantsTest {
         assertEquals((int) (Math.log(Integer.SIZE) / Math.log(2)), Constants.LEVEL_BITS);
     }
 
+    @Test
+    void levelMask() {
+        assertEquals((1 << Constants.LEVEL_BITS) - 1, Constants.LEVEL_MASK);
+    }
+
     @Test
     void maxDepth() throws Exception {
         assertEquals((int) Math.ceil((double)Constants.HASH_BITS / Constants.LEVEL_BITS), Constants.MAX_DEPTH);
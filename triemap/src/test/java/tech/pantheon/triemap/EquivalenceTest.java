@@ -35,4 +35,16 @@ class EquivalenceTest {
             assertSame(Equivalence.Equals.INSTANCE, ois.readObject());
         }
     }
+
+    @Test
+    void identityReadResolveWorks() throws Exception {
+        final var baos = new ByteArrayOutputStream();
+        try (var oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(Equivalence.identity());
+        }
+
+        try (var ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            assertSame(Equivalence.identity(), ois.readObject());
+        }
+    }
 }
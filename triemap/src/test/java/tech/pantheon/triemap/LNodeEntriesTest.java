@@ -18,15 +18,19 @@ package tech.pantheon.triemap;
 import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 
 class LNodeEntriesTest {
-    private LNodeEntries<Integer, Boolean> map = LNodeEntries.of(1, TRUE, 2, TRUE);
+    private static final Equivalence<Object> EQUALS = Equivalence.equals();
+
+    private LNodeEntries.Chain<Integer, Boolean> map = LNodeEntries.of(1, TRUE, 2, TRUE);
 
     @Test
     void testReplaceInvalid() {
@@ -79,6 +83,109 @@ class LNodeEntriesTest {
             map = map.insertEntry(i, TRUE);
         }
 
-        assertNull(map.findEntry(0));
+        assertNull(map.findEntry(EQUALS, 0));
+    }
+
+    @Test
+    void testTreeify() {
+        LNodeEntries<Integer, Boolean> entries = map;
+        int size = 2;
+        while (size < LNodeEntries.TREEIFY_THRESHOLD - 1) {
+            entries = entries.insertEntry(++size, TRUE).forSize(size);
+            assertInstanceOf(LNodeEntries.Chain.class, entries);
+        }
+        entries = entries.insertEntry(++size, TRUE).forSize(size);
+        assertInstanceOf(LNodeEntries.Tree.class, entries);
+
+        for (int i = 1; i <= size; ++i) {
+            assertEquals(Map.entry(i, TRUE), entries.findEntry(EQUALS, i));
+        }
+        assertNull(entries.findEntry(EQUALS, 0));
+        assertEquals(size, count(entries));
+
+        while (size > LNodeEntries.UNTREEIFY_THRESHOLD + 1) {
+            entries = entries.removeEntry(entries.findEntry(EQUALS, size--)).forSize(size);
+            assertInstanceOf(LNodeEntries.Tree.class, entries);
+        }
+        entries = entries.removeEntry(entries.findEntry(EQUALS, size--)).forSize(size);
+        assertInstanceOf(LNodeEntries.Chain.class, entries);
+        assertEquals(size, count(entries));
+    }
+
+    @Test
+    void testTreeOperations() {
+        LNodeEntries<Integer, Boolean> entries = map;
+        for (int i = 3; i <= 1000; ++i) {
+            entries = entries.insertEntry(i, TRUE).forSize(i);
+        }
+        assertInstanceOf(LNodeEntries.Tree.class, entries);
+
+        // replace every other entry, remove every third entry
+        for (int i = 2; i <= 1000; i += 2) {
+            entries = entries.replace(entries.findEntry(EQUALS, i), FALSE);
+        }
+        int size = 1000;
+        for (int i = 3; i <= 1000; i += 3) {
+            entries = entries.removeEntry(entries.findEntry(EQUALS, i));
+            size--;
+        }
+        assertInstanceOf(LNodeEntries.Tree.class, entries);
+
+        int count = 0;
+        Integer prev = 0;
+        for (var entry : entries) {
+            // in-order iteration
+            assertTrue(prev < entry.key());
+            prev = entry.key();
+            count++;
+        }
+        assertEquals(size, count);
+        for (int i = 1; i <= 1000; ++i) {
+            final var entry = entries.findEntry(EQUALS, i);
+            if (i % 3 == 0) {
+                assertNull(entry);
+            } else {
+                assertEquals(Map.entry(i, i % 2 != 0), entry);
+            }
+        }
+
+        final var invalid = new LNodeEntries.Single<>(1, TRUE);
+        final var treeEntries = entries;
+        final var ex = assertThrows(VerifyException.class, () -> treeEntries.replace(invalid, FALSE));
+        assertEquals("Failed to find entry 1=true", ex.getMessage());
+    }
+
+    @Test
+    void testTreeFallback() {
+        LNodeEntries<Object, Boolean> entries = LNodeEntries.of(1, TRUE, 2, TRUE);
+        for (int i = 3; i <= LNodeEntries.TREEIFY_THRESHOLD; ++i) {
+            entries = entries.insertEntry(i, TRUE).forSize(i);
+        }
+        assertInstanceOf(LNodeEntries.Tree.class, entries);
+
+        // A key of a different class turns the tree back into a chain
+        entries = entries.insertEntry("foo", TRUE);
+        assertInstanceOf(LNodeEntries.Chain.class, entries);
+        assertEquals(Map.entry("foo", TRUE), entries.findEntry(EQUALS, "foo"));
+        assertEquals(Map.entry(1, TRUE), entries.findEntry(EQUALS, 1));
+        // ... and mixed keys stay in a chain
+        assertInstanceOf(LNodeEntries.Chain.class, entries.forSize(LNodeEntries.TREEIFY_THRESHOLD + 1));
+    }
+
+    @Test
+    void testNonComparableStaysChain() {
+        LNodeEntries<Object, Boolean> entries = LNodeEntries.of(new ZeroHashInt(1), TRUE, new ZeroHashInt(2), TRUE);
+        for (int i = 3; i <= 2 * LNodeEntries.TREEIFY_THRESHOLD; ++i) {
+            entries = entries.insertEntry(new ZeroHashInt(i), TRUE).forSize(i);
+            assertInstanceOf(LNodeEntries.Chain.class, entries);
+        }
+    }
+
+    private static int count(final Iterable<?> iterable) {
+        int ret = 0;
+        for (var it = iterable.iterator(); it.hasNext(); it.next()) {
+            ret++;
+        }
+        return ret;
     }
 }
@@ -112,4 +112,17 @@ class MutableEntrySetTest {
         }));
         assertEquals(Map.of(KEY, VALUE2), map);
     }
+
+    @Test
+    void testRemoveIf() {
+        assertFalse(set.removeIf(entry -> VALUE2.equals(entry.getValue())));
+        assertEquals(1, map.size());
+        assertTrue(set.removeIf(entry -> VALUE.equals(entry.getValue())));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void testRemoveIfNull() {
+        assertThrows(NullPointerException.class, () -> set.removeIf(null));
+    }
 }
@@ -95,4 +95,17 @@ class MutableKeySetTest {
         assertEquals(KEY, it.next());
         assertFalse(it.hasNext());
     }
+
+    @Test
+    void testRemoveIf() {
+        assertFalse(set.removeIf(VALUE::equals));
+        assertEquals(1, map.size());
+        assertTrue(set.removeIf(KEY::equals));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void testRemoveIfNull() {
+        assertThrows(NullPointerException.class, () -> set.removeIf(null));
+    }
 }
@@ -32,6 +32,23 @@ class MutableTrieSetTest {
         assertInstanceOf(MutableTrieSet.class, TrieSet.create());
     }
 
+    @Test
+    void createSizedIsMutable() {
+        final var set = TrieSet.<Integer>create(100_000);
+        assertInstanceOf(MutableTrieSet.class, set);
+        assertEquals(0, set.size());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(set.add(i));
+        }
+        assertEquals(1000, set.size());
+        assertTrue(set.contains(999));
+    }
+
+    @Test
+    void createNegativeSize() {
+        assertThrows(IllegalArgumentException.class, () -> TrieSet.create(-1));
+    }
+
     @Test
     void emptyIsEmpty() {
         assertEquals(0, TrieSet.create().size());
@@ -0,0 +1,99 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MutableValuesTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+
+    private Collection<String> values;
+    private MutableTrieMap<String, String> map;
+
+    @BeforeEach
+    void before() {
+        map = TrieMap.create();
+        map.put(KEY, VALUE);
+        values = map.values();
+    }
+
+    @Test
+    void testCached() {
+        assertSame(values, map.values());
+    }
+
+    @Test
+    void testAdd() {
+        assertThrows(UnsupportedOperationException.class, () -> values.add(VALUE));
+    }
+
+    @Test
+    void testClear() {
+        values.clear();
+        assertTrue(map.isEmpty());
+        assertTrue(values.isEmpty());
+    }
+
+    @Test
+    void testContains() {
+        assertTrue(values.contains(VALUE));
+        assertFalse(values.contains(KEY));
+    }
+
+    @Test
+    void testContainsNull() {
+        assertThrows(NullPointerException.class, () -> values.contains(null));
+    }
+
+    @Test
+    void testSize() {
+        assertEquals(1, values.size());
+        map.put(VALUE, KEY);
+        assertEquals(2, values.size());
+    }
+
+    @Test
+    void testIterator() {
+        final var it = values.iterator();
+        assertTrue(it.hasNext());
+        assertEquals(VALUE, it.next());
+        assertFalse(it.hasNext());
+        it.remove();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void testRemoveIf() {
+        assertFalse(values.removeIf(KEY::equals));
+        assertEquals(1, map.size());
+        assertTrue(values.removeIf(VALUE::equals));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void testRemoveIfNull() {
+        assertThrows(NullPointerException.class, () -> values.removeIf(null));
+    }
+}
@@ -31,6 +31,7 @@ class SNodeTest {
     @Test
     void testCopyTombed() {
         final var tnode = new TNode<>(new CNode<>(new Gen()), snode);
+        assertSame(snode, tnode.sn);
         assertEquals(snode.hashCode(), tnode.hashCode());
         assertSame(snode.key(), tnode.key());
         assertSame(snode.value(), tnode.value());
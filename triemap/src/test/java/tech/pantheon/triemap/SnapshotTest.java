@@ -17,8 +17,20 @@ package tech.pantheon.triemap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -65,4 +77,98 @@ class SnapshotTest {
         assertTrue(snap.containsKey("k2"));
 
     }
+
+    @Test
+    void testLookupDoesNotRenew() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < 10000; i++) {
+            bt.put(i, i);
+        }
+
+        final var snap = bt.immutableSnapshot();
+        final var root = bt.readRoot();
+        final var main = root.gcasRead(bt);
+        for (int i = 0; i < 10001; i++) {
+            assertEquals(i < 10000, bt.containsKey(i));
+        }
+        // Lookups have not rewritten anything
+        assertSame(root, bt.readRoot());
+        assertSame(main, root.gcasRead(bt));
+
+        // Updates still do and are isolated from the snapshot
+        bt.put(0, -1);
+        assertEquals(-1, bt.get(0));
+        assertEquals(0, snap.get(0));
+        assertEquals(9999, bt.get(9999));
+    }
+
+    @Test
+    void testSharedSnapshot() {
+        final var snap = map.immutableSnapshot();
+        assertSame(snap, map.immutableSnapshot());
+        assertTrue(map.containsKey("k1"));
+        assertSame(snap, map.immutableSnapshot());
+
+        // A modification results in a new snapshot
+        map.put("k3", "v3");
+        final var next = map.immutableSnapshot();
+        assertNotSame(snap, next);
+        assertEquals(2, snap.size());
+        assertEquals(3, next.size());
+
+        // Mutable snapshots are never shared, but share the frozen state
+        final var fork = map.mutableSnapshot();
+        assertNotSame(fork, map.mutableSnapshot());
+        assertSame(next, map.immutableSnapshot());
+        fork.put("k4", "v4");
+        assertEquals(3, map.size());
+        assertEquals(4, fork.size());
+    }
+
+    @Test
+    void testCoalescingSnapshot() {
+        final var bt = TrieMap.<String, String>createCoalescing(Duration.ofHours(1));
+        bt.put("k1", "v1");
+        final var snap = bt.immutableSnapshot();
+        bt.put("k2", "v2");
+
+        // Within the window we get the same snapshot, even though the map has been modified
+        assertSame(snap, bt.immutableSnapshot());
+        assertEquals(1, snap.size());
+        // Everything else observes the current state
+        assertEquals(2, bt.size());
+        assertFalse(bt.isEmpty());
+        assertEquals("v2", bt.get("k2"));
+        assertEquals(Map.of("k1", "v1", "k2", "v2"), bt);
+        assertEquals(bt, new HashMap<>(Map.of("k1", "v1", "k2", "v2")));
+        // Mutable snapshots are not affected
+        assertEquals(2, bt.mutableSnapshot().size());
+
+        final var zero = TrieMap.<String, String>createCoalescing(Duration.ZERO);
+        final var zeroSnap = zero.immutableSnapshot();
+        zero.put("k1", "v1");
+        assertNotSame(zeroSnap, zero.immutableSnapshot());
+        assertEquals(1, zero.size());
+
+        assertThrows(IllegalArgumentException.class, () -> TrieMap.createCoalescing(Duration.ofSeconds(-1)));
+    }
+
+    @Test
+    void testCoalescingSerialization() throws IOException, ClassNotFoundException {
+        final var bt = TrieMap.<String, String>createCoalescing(Duration.ofHours(1));
+        assertTrue(bt.immutableSnapshot().isEmpty());
+        bt.put("k1", "v1");
+        assertTrue(bt.immutableSnapshot().isEmpty());
+
+        final var bos = new ByteArrayOutputStream();
+        try (var oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(bt);
+        }
+
+        final TrieMap<?, ?> actual;
+        try (var ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            actual = assertInstanceOf(MutableTrieMap.class, ois.readObject());
+        }
+        assertEquals(Map.of("k1", "v1"), actual);
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+
+class TestBackoff {
+    private static final int COUNT = 50 * 1000;
+
+    @Test
+    void testBackoff() {
+        // Backoff is bounded even for very large restart counts
+        for (int i = 0; i < 100; i++) {
+            Backoff.backoff(i);
+        }
+        Backoff.backoff(Integer.MAX_VALUE);
+    }
+
+    @Test
+    void testUncontended() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < COUNT; i++) {
+            bt.put(i, i);
+        }
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(i, bt.get(i));
+        }
+        assertEquals(0, bt.restartCount());
+    }
+
+    @Test
+    void testImmutableRestart() {
+        final var snap = TrieMap.<Integer, Integer>create().immutableSnapshot();
+        assertThrows(VerifyException.class, () -> snap.restart(1));
+    }
+
+    @Test
+    void testContended() throws InterruptedException, ExecutionException, TimeoutException {
+        final int nThreads = 8;
+        final var bt = TrieMap.<Integer, Long>create();
+        final var es = Executors.newFixedThreadPool(nThreads);
+        try {
+            final var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < nThreads; i++) {
+                futures.add(es.submit(() -> {
+                    for (int j = 0; j < COUNT; j++) {
+                        bt.merge(j % 4, 1L, Long::sum);
+                    }
+                }));
+            }
+            for (var future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            es.shutdownNow();
+        }
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(nThreads * COUNT / 4, bt.get(i));
+        }
+        assertTrue(bt.restartCount() >= 0);
+    }
+}
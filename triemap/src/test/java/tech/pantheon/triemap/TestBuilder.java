@@ -0,0 +1,88 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class TestBuilder {
+    @Test
+    void testCombiningEquivalence() {
+        final var map = TrieMap.<String, Integer>builder()
+            .equivalence(Equivalence.identity())
+            .combining()
+            .expectedSize(100)
+            .build();
+
+        final var first = new String("key");
+        final var second = new String("key");
+        assertNull(map.put(first, 1));
+        assertNull(map.put(second, 2));
+        assertEquals(2, map.merge(first, 1, Integer::sum));
+        assertEquals(2, map.size());
+
+        // Mutable snapshots retain the equivalence
+        final var fork = map.mutableSnapshot();
+        assertEquals(2, fork.get(first));
+        assertNull(fork.get("key"));
+        assertEquals(2, fork.immutableSnapshot().mutableSnapshot().get(second));
+    }
+
+    @Test
+    void testCoalescingCompacting() {
+        final var compactions = new AtomicInteger();
+        final Executor executor = command -> {
+            compactions.incrementAndGet();
+            command.run();
+        };
+
+        final var map = TrieMap.<Integer, Integer>builder()
+            .coalescing(Duration.ofHours(1))
+            .compacting(executor, 1)
+            .build();
+        map.put(1, 1);
+        final var snap = map.immutableSnapshot();
+        map.put(2, 2);
+        assertSame(snap, map.immutableSnapshot());
+        map.remove(2);
+        assertEquals(1, compactions.get());
+
+        // Forks coalesce and compact on their own
+        final var fork = map.mutableSnapshot();
+        final var forkSnap = fork.immutableSnapshot();
+        fork.put(3, 3);
+        assertSame(forkSnap, fork.immutableSnapshot());
+        fork.remove(3);
+        assertEquals(2, compactions.get());
+    }
+
+    @Test
+    void testInvalidArguments() {
+        final var builder = TrieMap.<Integer, Integer>builder();
+        assertThrows(NullPointerException.class, () -> builder.equivalence(null));
+        assertThrows(IllegalArgumentException.class, () -> builder.expectedSize(-1));
+        assertThrows(IllegalArgumentException.class, () -> builder.coalescing(Duration.ofSeconds(-1)));
+        assertThrows(IllegalArgumentException.class, () -> builder.compacting(Runnable::run, 0));
+        assertThrows(NullPointerException.class, () -> builder.compacting(null, 1));
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tech.pantheon.triemap.PresencePredicate.ABSENT;
+import static tech.pantheon.triemap.PresencePredicate.PRESENT;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import org.junit.jupiter.api.Test;
+
+class TestCombining {
+    private static final int COUNT = 50 * 1000;
+
+    private static final class ByteArrayEquivalence extends Equivalence<byte[]> {
+        @java.io.Serial
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public int hash(final byte[] obj) {
+            return Arrays.hashCode(obj);
+        }
+
+        @Override
+        public boolean equivalent(final byte[] first, final byte[] second) {
+            return Arrays.equals(first, second);
+        }
+    }
+
+    private final MutableTrieMap<String, String> map = TrieMap.create();
+    private final Combiner<String, String> combiner = new Combiner<>();
+
+    private Object apply(final Combiner.Update<String, String> update) {
+        return combiner.apply(map, update);
+    }
+
+    @Test
+    void testInsertIf() {
+        assertNull(apply(Combiner.insertIf("a", "1", ABSENT)));
+        assertEquals("1", apply(Combiner.insertIf("a", "2", ABSENT)));
+        assertEquals("1", apply(Combiner.insertIf("a", "2", null)));
+        assertEquals("2", apply(Combiner.insertIf("a", "3", PRESENT)));
+        assertNull(apply(Combiner.insertIf("b", "3", PRESENT)));
+        assertNull(apply(Combiner.insertIf("a", "4", "2")));
+        assertEquals("3", apply(Combiner.insertIf("a", "4", "3")));
+        assertEquals(Map.of("a", "4"), map);
+    }
+
+    @Test
+    void testRemoveIf() {
+        map.put("a", "1");
+        assertNull(apply(Combiner.removeIf("b", null)));
+        assertNull(apply(Combiner.removeIf("a", "2")));
+        assertEquals("1", apply(Combiner.removeIf("a", "1")));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void testCompute() {
+        assertEquals("1", apply(Combiner.compute("a", (key, value) -> value == null ? "1" : value + "1")));
+        assertEquals("11", apply(Combiner.compute("a", (key, value) -> value == null ? "1" : value + "1")));
+        assertNull(apply(Combiner.compute("a", (key, value) -> null)));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void testComputeFailure() {
+        map.put("a", "1");
+        final var ex = new IllegalStateException();
+        assertSame(ex, assertThrows(IllegalStateException.class, () -> apply(Combiner.compute("a", (key, value) -> {
+            throw ex;
+        }))));
+        assertEquals(Map.of("a", "1"), map);
+        assertFalse(combiner.isCombining());
+    }
+
+    @Test
+    void testCombiningMap() {
+        final var bt = TrieMap.<Integer, Integer>createCombining();
+        for (int i = 0; i < COUNT; i++) {
+            assertNull(bt.put(i, i));
+        }
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(i, bt.get(i));
+            assertEquals(i, bt.remove(i));
+        }
+        assertTrue(bt.isEmpty());
+    }
+
+    @Test
+    void testHotKeys() throws InterruptedException, ExecutionException, TimeoutException {
+        final int nThreads = 8;
+        final var bt = TrieMap.<Integer, Long>createCombining();
+        final var es = Executors.newFixedThreadPool(nThreads);
+        try {
+            final var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < nThreads; i++) {
+                futures.add(es.submit(() -> {
+                    for (int j = 0; j < COUNT; j++) {
+                        bt.merge(j % 4, 1L, Long::sum);
+                        bt.compute(4, (key, value) -> value == null ? 1L : value + 1);
+                    }
+                }));
+            }
+            for (var future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            es.shutdownNow();
+        }
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(nThreads * COUNT / 4, bt.get(i));
+        }
+        assertEquals(nThreads * COUNT, bt.get(4));
+    }
+
+    @Test
+    void testBatchIdentity() throws InterruptedException {
+        final var bt = TrieMap.<String, Long>create(Equivalence.identity());
+        final var first = new String("key");
+        final var second = new String("key");
+        combineBatch(bt, Combiner.compute(first, (key, value) -> 1L), Combiner.compute(second, (key, value) -> 2L));
+
+        // Equal keys are distinct mappings
+        assertEquals(2, bt.size());
+        assertEquals(1L, bt.get(first));
+        assertEquals(2L, bt.get(second));
+    }
+
+    @Test
+    void testBatchEquivalence() throws InterruptedException {
+        final var bt = TrieMap.<byte[], Long>create(new ByteArrayEquivalence());
+        final BiFunction<byte[], Long, Long> increment = (key, value) -> value == null ? 1L : value + 1;
+        combineBatch(bt, Combiner.compute("key".getBytes(), increment), Combiner.compute("key".getBytes(), increment));
+
+        // Equivalent keys are the same mapping
+        assertEquals(1, bt.size());
+        assertEquals(2L, bt.get("key".getBytes()));
+    }
+
+    // Apply two updates such that they end up being combined in the same batch: we hold the combiner in an update
+    // function until both of them have been published and their threads are waiting.
+    private static <K> void combineBatch(final MutableTrieMap<K, Long> bt, final Combiner.Update<K, Long> first,
+            final Combiner.Update<K, Long> second) throws InterruptedException {
+        final var local = new Combiner<K, Long>();
+        final var combining = new CountDownLatch(1);
+        final var blocker = new CountDownLatch(1);
+        final var holder = new Thread(() -> local.apply(bt, Combiner.compute(first.key, (key, value) -> {
+            combining.countDown();
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return value;
+        })));
+        holder.start();
+        combining.await();
+
+        final var firstThread = new Thread(() -> local.apply(bt, first));
+        final var secondThread = new Thread(() -> local.apply(bt, second));
+        firstThread.start();
+        secondThread.start();
+        while (firstThread.getState() != Thread.State.WAITING || secondThread.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+
+        blocker.countDown();
+        holder.join();
+        firstThread.join();
+        secondThread.join();
+    }
+}
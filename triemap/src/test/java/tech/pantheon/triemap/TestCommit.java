@@ -0,0 +1,223 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+
+class TestCommit {
+    private static final int COUNT = 50 * 1000;
+
+    @Test
+    void testCommit() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        final var expected = new HashMap<Integer, Integer>();
+        for (int i = 0; i < COUNT; i++) {
+            bt.put(i, i);
+            expected.put(i, i);
+        }
+
+        final var fork = bt.mutableSnapshot();
+        for (int i = 0; i < COUNT; i += 100) {
+            fork.put(i, -i);
+            expected.put(i, -i);
+        }
+        fork.remove(1);
+        expected.remove(1);
+        fork.put(COUNT, COUNT);
+        expected.put(COUNT, COUNT);
+
+        // Not visible until committed
+        assertEquals(0, bt.get(0));
+        assertTrue(fork.commit());
+        assertEquals(expected, bt);
+        assertEquals(expected, fork);
+        // The origin's entry counter is adjusted by the committed changes
+        assertEquals(expected.size(), bt.mappingCount());
+
+        // Nothing to commit
+        assertTrue(fork.commit());
+        assertEquals(expected, bt);
+    }
+
+    @Test
+    void testCommitMerge() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        final var expected = new HashMap<Integer, Integer>();
+        for (int i = 0; i < COUNT; i++) {
+            bt.put(i, i);
+            expected.put(i, i);
+        }
+
+        final var fork = bt.mutableSnapshot();
+        for (int i = 0; i < COUNT; i += 2) {
+            bt.put(i, -i);
+            expected.put(i, -i);
+        }
+        for (int i = 1; i < COUNT; i += 2) {
+            fork.put(i, -i);
+            expected.put(i, -i);
+        }
+        bt.remove(2);
+        expected.remove(2);
+        fork.remove(3);
+        expected.remove(3);
+        // The same change on both sides does not conflict
+        bt.put(5, 5);
+        fork.put(5, 5);
+        expected.put(5, 5);
+        // New keys on both sides
+        bt.put(COUNT, COUNT);
+        fork.put(COUNT + 1, COUNT + 1);
+        expected.put(COUNT, COUNT);
+        expected.put(COUNT + 1, COUNT + 1);
+
+        assertTrue(fork.commit());
+        assertEquals(expected, bt);
+        assertEquals(expected.size(), bt.mappingCount());
+    }
+
+    @Test
+    void testCommitSmall() {
+        // Keys 1 and 33 share a slot in the root CNode
+        final var bt = TrieMap.<Integer, String>create();
+        final var fork = bt.mutableSnapshot();
+        bt.put(1, "a");
+        fork.put(33, "b");
+        assertTrue(fork.commit());
+        assertEquals(Map.of(1, "a", 33, "b"), bt);
+        assertEquals(2, bt.mappingCount());
+
+        // Subsequent commits only carry new changes
+        bt.put(1, "c");
+        fork.put(65, "d");
+        assertTrue(fork.commit());
+        assertEquals(Map.of(1, "c", 33, "b", 65, "d"), bt);
+        assertEquals(3, bt.mappingCount());
+    }
+
+    @Test
+    void testCommitConflict() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < COUNT; i++) {
+            bt.put(i, i);
+        }
+
+        final var fork = bt.mutableSnapshot();
+        bt.put(0, 1);
+        fork.put(0, 2);
+        fork.put(1, 2);
+        assertFalse(fork.commit());
+        assertEquals(1, bt.get(0));
+        assertEquals(1, bt.get(1));
+
+        // Removal conflicts with an update
+        final var other = bt.mutableSnapshot();
+        bt.remove(2);
+        other.put(2, 3);
+        assertFalse(other.commit());
+        assertEquals(null, bt.get(2));
+    }
+
+    @Test
+    void testCommitConflictingHash() {
+        final var bt = TrieMap.<ZeroHashInt, Integer>create();
+        for (int i = 0; i < 5; i++) {
+            bt.put(new ZeroHashInt(i), i);
+        }
+
+        // Changes on one side only are carried over
+        final var fork = bt.mutableSnapshot();
+        fork.put(new ZeroHashInt(0), -1);
+        fork.remove(new ZeroHashInt(1));
+        assertTrue(fork.commit());
+        assertEquals(4, bt.size());
+        assertEquals(4, bt.mappingCount());
+        assertEquals(-1, bt.get(new ZeroHashInt(0)));
+
+        // Changes on both sides are reported as a conflict
+        bt.put(new ZeroHashInt(2), -2);
+        fork.put(new ZeroHashInt(3), -3);
+        assertFalse(fork.commit());
+        assertEquals(null, bt.get(new ZeroHashInt(1)));
+        assertEquals(3, bt.get(new ZeroHashInt(3)));
+    }
+
+    @Test
+    void testCommitSnapshot() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < COUNT; i++) {
+            bt.put(i, i);
+        }
+        final var snap = bt.immutableSnapshot();
+        final var fork = bt.mutableSnapshot();
+        fork.clear();
+        assertTrue(fork.commit());
+        assertTrue(bt.isEmpty());
+        assertEquals(0, bt.mappingCount());
+        assertEquals(COUNT, snap.size());
+    }
+
+    @Test
+    void testCommitNotForked() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        assertThrows(IllegalStateException.class, bt::commit);
+        final var fork = bt.immutableSnapshot().mutableSnapshot();
+        assertThrows(IllegalStateException.class, fork::commit);
+    }
+
+    @Test
+    void testCommitConcurrent() throws InterruptedException, ExecutionException, TimeoutException {
+        final int nThreads = 4;
+        final var bt = TrieMap.<Integer, Integer>create();
+        final var es = Executors.newFixedThreadPool(nThreads + 1);
+        try {
+            final var writer = es.submit(() -> {
+                for (int i = 0; i < COUNT; i += 2) {
+                    bt.put(i, i);
+                }
+            });
+
+            final var fork = bt.mutableSnapshot();
+            for (int i = 1; i < COUNT; i += 2) {
+                fork.put(i, i);
+                if (i % 1000 == 1) {
+                    assertTrue(fork.commit());
+                }
+            }
+            writer.get(5, TimeUnit.MINUTES);
+            assertTrue(fork.commit());
+        } finally {
+            es.shutdownNow();
+        }
+
+        assertEquals(COUNT, bt.size());
+        assertEquals(COUNT, bt.mappingCount());
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(i, bt.get(i));
+        }
+    }
+}
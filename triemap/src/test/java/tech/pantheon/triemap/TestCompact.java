@@ -0,0 +1,145 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class TestCompact {
+    private static final int COUNT = 50 * 1000;
+
+    @Test
+    void testCompactChain() {
+        final var bt = TrieMap.<ZeroHashInt, Integer>create();
+        bt.put(new ZeroHashInt(0), 0);
+        bt.put(new ZeroHashInt(1), 1);
+        bt.remove(new ZeroHashInt(1));
+
+        // The removal has left behind a chain of single-branch CNodes leading to the remaining entry
+        assertInstanceOf(INode.class, rootMain(bt).array[0]);
+
+        bt.compact();
+        final var main = rootMain(bt);
+        assertEquals(1, main.array.length);
+        assertEquals(new ZeroHashInt(0), assertInstanceOf(SNode.class, main.array[0]).key());
+        assertEquals(0, bt.get(new ZeroHashInt(0)));
+        assertEquals(1, bt.size());
+    }
+
+    @Test
+    void testCompactMassRemoval() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < COUNT; i++) {
+            bt.put(i, i);
+        }
+        for (int i = 0; i < COUNT; i++) {
+            if (i % 100 != 0) {
+                bt.remove(i);
+            }
+        }
+        bt.compact();
+        assertEquals(0, countTNodes(bt, bt.readRoot()));
+        assertEquals(COUNT / 100, bt.size());
+        for (int i = 0; i < COUNT; i += 100) {
+            assertEquals(i, bt.get(i));
+        }
+    }
+
+    @Test
+    void testCompactSnapshot() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < COUNT; i++) {
+            bt.put(i, i);
+        }
+        final var snap = bt.immutableSnapshot();
+        for (int i = 0; i < COUNT; i++) {
+            if (i % 100 != 0) {
+                bt.remove(i);
+            }
+        }
+
+        bt.compact();
+        assertEquals(0, countTNodes(bt, bt.readRoot()));
+        assertEquals(COUNT / 100, bt.size());
+        assertEquals(COUNT, snap.size());
+    }
+
+    @Test
+    void testCreateCompacting() {
+        final var compactions = new AtomicInteger();
+        final Executor executor = command -> {
+            compactions.incrementAndGet();
+            command.run();
+        };
+
+        final var bt = TrieMap.<Integer, Integer>createCompacting(executor, 1000);
+        for (int i = 0; i < COUNT; i++) {
+            bt.put(i, i);
+        }
+        assertEquals(0, compactions.get());
+
+        bt.keySet().removeIf(key -> key % 10 != 0);
+        for (int i = 0; i < COUNT; i += 10) {
+            bt.remove(i);
+        }
+        assertNotEquals(0, compactions.get());
+        assertEquals(0, countTNodes(bt, bt.readRoot()));
+        assertEquals(0, bt.mappingCount());
+    }
+
+    @Test
+    void testCreateCompactingRejected() {
+        final var bt = TrieMap.<Integer, Integer>createCompacting(command -> {
+            throw new RejectedExecutionException();
+        }, 1);
+        bt.put(1, 1);
+        bt.remove(1);
+        assertEquals(0, bt.size());
+    }
+
+    @Test
+    void testCreateCompactingInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> TrieMap.createCompacting(Runnable::run, 0));
+        assertThrows(NullPointerException.class, () -> TrieMap.createCompacting(null, 1));
+    }
+
+    private static CNode<?, ?> rootMain(final TrieMap<?, ?> map) {
+        return assertInstanceOf(CNode.class, map.readRoot().gcasRead(map));
+    }
+
+    private static int countTNodes(final TrieMap<?, ?> map, final INode<?, ?> in) {
+        final var main = in.gcasRead(map);
+        if (main instanceof TNode) {
+            return 1;
+        }
+        int ret = 0;
+        if (main instanceof CNode<?, ?> cn) {
+            for (var branch : cn.array) {
+                if (branch instanceof INode<?, ?> child) {
+                    ret += countTNodes(map, child);
+                }
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class TestCompareAndSet {
+    private static final int COUNT = 50 * 1000;
+
+    @Test
+    void testMove() {
+        final var bt = TrieMap.<String, String>create();
+        bt.put("a", "1");
+        assertTrue(bt.compareAndSet(Map.of("a", "1"), Map.of("b", "1")));
+        assertEquals(Map.of("b", "1"), bt);
+
+        // Expectation on a no longer exists
+        assertFalse(bt.compareAndSet(Map.of("a", "1"), Map.of("b", "1")));
+        assertEquals(Map.of("b", "1"), bt);
+    }
+
+    @Test
+    void testReserve() {
+        final var bt = TrieMap.<String, String>create();
+        assertTrue(bt.compareAndSet(Map.of(), Map.of("a", "x", "b", "x")));
+        assertEquals(Map.of("a", "x", "b", "x"), bt);
+
+        // b is already taken
+        assertFalse(bt.compareAndSet(Map.of(), Map.of("b", "y", "c", "y")));
+        assertEquals(Map.of("a", "x", "b", "x"), bt);
+    }
+
+    @Test
+    void testMismatch() {
+        final var bt = TrieMap.<String, String>create();
+        bt.put("a", "1");
+        bt.put("b", "2");
+        assertFalse(bt.compareAndSet(Map.of("a", "1", "b", "3"), Map.of("a", "4", "b", "5")));
+        assertEquals(Map.of("a", "1", "b", "2"), bt);
+        assertTrue(bt.compareAndSet(Map.of("a", "1", "b", "2"), Map.of("a", "4", "b", "5")));
+        assertEquals(Map.of("a", "4", "b", "5"), bt);
+    }
+
+    @Test
+    void testEmpty() {
+        final var bt = TrieMap.<String, String>create();
+        assertTrue(bt.compareAndSet(Map.of(), Map.of()));
+        assertTrue(bt.isEmpty());
+    }
+
+    @Test
+    void testNull() {
+        final var bt = TrieMap.<String, String>create();
+        final var map = new HashMap<String, String>();
+        map.put("a", null);
+        assertThrows(NullPointerException.class, () -> bt.compareAndSet(map, Map.of()));
+        assertThrows(NullPointerException.class, () -> bt.compareAndSet(Map.of(), map));
+    }
+
+    @Test
+    void testMany() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        final var update = new HashMap<Integer, Integer>();
+        for (int i = 0; i < COUNT; i++) {
+            update.put(i, i);
+        }
+        assertTrue(bt.compareAndSet(Map.of(), update));
+        assertEquals(update, bt);
+
+        // Swap the values of neighbouring keys, which share the same CNode
+        final var expected = new HashMap<Integer, Integer>();
+        final var swapped = new HashMap<Integer, Integer>();
+        for (int i = 0; i < COUNT; i += 2) {
+            expected.put(i, i);
+            expected.put(i + 1, i + 1);
+            swapped.put(i, i + 1);
+            swapped.put(i + 1, i);
+        }
+        assertTrue(bt.compareAndSet(expected, swapped));
+        assertEquals(swapped, bt);
+
+        // Remove everything
+        assertTrue(bt.compareAndSet(swapped, Map.of()));
+        assertTrue(bt.isEmpty());
+        assertEquals(0, bt.size());
+    }
+
+    @Test
+    void testConflictingHash() {
+        final var bt = TrieMap.<ZeroHashInt, Integer>create();
+        final var update = new HashMap<ZeroHashInt, Integer>();
+        for (int i = 0; i < 5; i++) {
+            update.put(new ZeroHashInt(i), i);
+        }
+        assertTrue(bt.compareAndSet(Map.of(), update));
+        assertEquals(update, bt);
+
+        // Shrink to a single entry
+        final var remaining = Map.of(new ZeroHashInt(0), 0);
+        final var expected = new HashMap<>(update);
+        expected.keySet().removeAll(remaining.keySet());
+        assertTrue(bt.compareAndSet(expected, Map.of()));
+        assertEquals(remaining, bt);
+
+        // Grow again and remove everything
+        assertTrue(bt.compareAndSet(Map.of(), expected));
+        assertEquals(update, bt);
+        assertTrue(bt.compareAndSet(update, Map.of()));
+        assertTrue(bt.isEmpty());
+        assertTrue(bt.compareAndSet(Map.of(), update));
+        assertEquals(update, bt);
+    }
+
+    @Test
+    void testSnapshot() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < COUNT; i++) {
+            bt.put(i, i);
+        }
+        final var snap = bt.immutableSnapshot();
+
+        assertTrue(bt.compareAndSet(Map.of(0, 0, 1, 1), Map.of(0, 1, 1, 0)));
+        assertEquals(1, bt.get(0));
+        assertEquals(0, bt.get(1));
+        assertEquals(0, snap.get(0));
+        assertEquals(1, snap.get(1));
+    }
+
+    @Test
+    void testConcurrentTransfers() throws InterruptedException, ExecutionException, TimeoutException {
+        final int accounts = 100;
+        final int nThreads = 4;
+        final var bt = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < accounts; i++) {
+            bt.put(i, 1000);
+        }
+
+        final var done = new AtomicBoolean();
+        final var es = Executors.newFixedThreadPool(nThreads + 1);
+        try {
+            final var snapshots = es.submit(() -> {
+                // Every snapshot has to observe the same total
+                while (!done.get()) {
+                    final var snap = bt.immutableSnapshot();
+                    assertEquals(accounts * 1000, snap.values().stream().mapToInt(Integer::intValue).sum());
+                }
+            });
+
+            final var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < nThreads; i++) {
+                futures.add(es.submit(() -> {
+                    final var random = ThreadLocalRandom.current();
+                    for (int j = 0; j < COUNT / 10; j++) {
+                        final int from = random.nextInt(accounts);
+                        final int to = random.nextInt(accounts);
+                        if (from != to) {
+                            transfer(bt, from, to);
+                        }
+                    }
+                }));
+            }
+            for (var future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+            done.set(true);
+            snapshots.get(5, TimeUnit.MINUTES);
+        } finally {
+            es.shutdownNow();
+        }
+
+        assertEquals(accounts * 1000, bt.values().stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    void testConcurrentMoves() throws InterruptedException, ExecutionException, TimeoutException {
+        final int tokens = 20;
+        final int slots = 64;
+        final int nThreads = 4;
+        final var bt = TrieMap.<ZeroHashInt, Integer>create();
+        for (int i = 0; i < tokens; i++) {
+            bt.put(new ZeroHashInt(i), i);
+        }
+
+        final var es = Executors.newFixedThreadPool(nThreads);
+        try {
+            final var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < nThreads; i++) {
+                futures.add(es.submit(() -> {
+                    final var random = ThreadLocalRandom.current();
+                    for (int j = 0; j < COUNT / 10; j++) {
+                        final var from = new ZeroHashInt(random.nextInt(slots));
+                        final var value = bt.get(from);
+                        if (value != null) {
+                            final var to = new ZeroHashInt(random.nextInt(slots));
+                            bt.compareAndSet(Map.of(from, value), Map.of(to, value));
+                        }
+                    }
+                }));
+            }
+            for (var future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            es.shutdownNow();
+        }
+
+        // Every token has to be present exactly once
+        assertEquals(tokens, bt.size());
+        assertEquals(tokens, bt.values().stream().distinct().count());
+    }
+
+    private static void transfer(final MutableTrieMap<Integer, Integer> bt, final Integer from, final Integer to) {
+        while (true) {
+            final var fromBalance = bt.get(from);
+            final var toBalance = bt.get(to);
+            if (bt.compareAndSet(Map.of(from, fromBalance, to, toBalance),
+                Map.of(from, fromBalance - 1, to, toBalance + 1))) {
+                return;
+            }
+        }
+    }
+}
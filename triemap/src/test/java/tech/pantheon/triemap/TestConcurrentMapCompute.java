@@ -16,6 +16,9 @@
 package tech.pantheon.triemap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import org.junit.jupiter.api.Test;
 
@@ -31,4 +34,52 @@ class TestConcurrentMapCompute {
             assertEquals(i + " -> " + i + " -> null", map.compute(i, (k, v) -> k + " -> " + v));
         }
     }
+
+    @Test
+    void testConcurrentMapComputeRemoves() {
+        final var map = TrieMap.create();
+
+        for (int i = 0; i < COUNT; i++) {
+            map.put(i, "42");
+        }
+        for (int i = 0; i < COUNT; i++) {
+            assertNull(map.compute(i, (k, v) -> null));
+            assertFalse(map.containsKey(i));
+        }
+        assertEquals(0, map.size());
+        assertNull(map.compute("absent", (k, v) -> null));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void testConflictingHash() {
+        final var k1 = new ZeroHashInt(1);
+        final var k2 = new ZeroHashInt(2);
+        final var k3 = new ZeroHashInt(3);
+        final var k3dup = new ZeroHashInt(3);
+        final var v1 = new ZeroHashInt(4);
+        final var v2 = new ZeroHashInt(5);
+        final var v3 = new ZeroHashInt(6);
+
+        final var map = TrieMap.<ZeroHashInt, ZeroHashInt>create();
+        // Pre-populate an LNode
+        assertSame(v1, map.compute(k1, (k, v) -> v1));
+        assertSame(v2, map.compute(k2, (k, v) -> v2));
+        assertSame(v3, map.compute(k3, (k, v) -> v3));
+
+        // Check with equivalent key
+        assertSame(v1, map.compute(k3dup, (k, v) -> {
+            assertSame(v3, v);
+            return v1;
+        }));
+        assertSame(v1, map.get(k3));
+
+        // Remove all entries from the LNode
+        assertNull(map.compute(k3dup, (k, v) -> null));
+        assertNull(map.compute(k2, (k, v) -> null));
+        assertEquals(1, map.size());
+        assertSame(v1, map.get(k1));
+        assertNull(map.compute(k1, (k, v) -> null));
+        assertEquals(0, map.size());
+    }
 }
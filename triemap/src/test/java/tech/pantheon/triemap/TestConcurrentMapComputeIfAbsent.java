@@ -16,10 +16,21 @@
 package tech.pantheon.triemap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.jupiter.api.Test;
 
 class TestConcurrentMapComputeIfAbsent {
@@ -71,4 +82,119 @@ class TestConcurrentMapComputeIfAbsent {
         assertNull(map.computeIfAbsent("key", k -> null));
         assertEquals("{}", map.toString());
     }
+
+    @Test
+    void testComputeIfAbsentOnceInvokesFunctionOnce() throws InterruptedException, ExecutionException {
+        final int threads = 8;
+        final var map = TrieMap.<String, String>create();
+        final var invocations = new AtomicInteger();
+        final var started = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final var futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < threads; ++i) {
+                futures.add(executor.submit(() -> map.computeIfAbsentOnce("key", k -> {
+                    invocations.incrementAndGet();
+                    started.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return "value";
+                })));
+            }
+
+            started.await(5, TimeUnit.SECONDS);
+            release.countDown();
+            for (var future : futures) {
+                assertEquals("value", future.get());
+            }
+        }
+
+        assertEquals(1, invocations.get());
+        assertEquals("value", map.get("key"));
+        assertEquals("value", map.computeIfAbsentOnce("key", k -> fail("Should not have called function")));
+    }
+
+    @Test
+    void testComputeIfAbsentOnceNull() {
+        final var map = TrieMap.create();
+        assertNull(map.computeIfAbsentOnce("key", k -> null));
+        assertEquals("{}", map.toString());
+    }
+
+    @Test
+    void testComputeIfAbsentOnceRecursive() {
+        final var map = TrieMap.create();
+        assertThrows(IllegalStateException.class,
+            () -> map.computeIfAbsentOnce("key", k -> map.computeIfAbsentOnce("key", k2 -> "value")));
+        assertEquals("{}", map.toString());
+        assertEquals("value", map.computeIfAbsentOnce("key", k -> "value"));
+    }
+
+    @Test
+    void testComputeIfAbsentOnceException() {
+        final var map = TrieMap.create();
+        final var ex = new IllegalArgumentException("expected");
+        assertSame(ex, assertThrows(IllegalArgumentException.class, () -> map.computeIfAbsentOnce("key", k -> {
+            throw ex;
+        })));
+        assertEquals("{}", map.toString());
+    }
+
+    @Test
+    @SuppressWarnings("checkstyle:illegalCatch")
+    void testComputeIfAbsentOnceSneakyException() throws InterruptedException {
+        final var map = TrieMap.<String, String>create();
+        final var ex = new IOException("expected");
+        final var started = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final var loaderFailure = new AtomicReference<Throwable>();
+        final var waiterFailure = new AtomicReference<Throwable>();
+
+        final var loader = new Thread(() -> {
+            try {
+                map.computeIfAbsentOnce("key", k -> {
+                    started.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    throw TestConcurrentMapComputeIfAbsent.<RuntimeException>sneakyThrow(ex);
+                });
+            } catch (Throwable t) {
+                loaderFailure.set(t);
+            }
+        });
+        loader.start();
+        started.await(5, TimeUnit.SECONDS);
+
+        final var waiter = new Thread(() -> {
+            try {
+                map.computeIfAbsentOnce("key", k -> fail("Should not have called function"));
+            } catch (Throwable t) {
+                waiterFailure.set(t);
+            }
+        });
+        waiter.start();
+        while (waiter.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+
+        release.countDown();
+        loader.join(TimeUnit.SECONDS.toMillis(5));
+        waiter.join(TimeUnit.SECONDS.toMillis(5));
+        assertFalse(waiter.isAlive());
+        assertSame(ex, loaderFailure.get());
+        assertSame(ex, waiterFailure.get());
+        assertEquals("{}", map.toString());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Throwable> T sneakyThrow(final Throwable failure) throws T {
+        throw (T) failure;
+    }
 }
@@ -79,5 +79,9 @@ class TestConcurrentMapComputeIfPresent {
         assertSame(v3, map.computeIfPresent(k3, (k, v) -> v3));
         // Check with equivalent key
         assertSame(v3, map.computeIfPresent(k3dup, (k, v) -> v3));
+        // Check removal
+        assertNull(map.computeIfPresent(k3dup, (k, v) -> null));
+        assertFalse(map.containsKey(k3));
+        assertNull(map.computeIfPresent(k3dup, (k, v) -> fail("Should not have called function")));
     }
 }
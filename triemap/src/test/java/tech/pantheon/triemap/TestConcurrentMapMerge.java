@@ -16,6 +16,9 @@
 package tech.pantheon.triemap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import org.junit.jupiter.api.Test;
@@ -43,4 +46,36 @@ class TestConcurrentMapMerge {
             assertEquals(newVal + newVal, map.merge(i, newVal, (ov, nv) -> "" + ov + nv));
         }
     }
+
+    @Test
+    void testConcurrentMapMergeRemovesValue() {
+        final var map = TrieMap.create();
+
+        for (int i = 0; i < COUNT; i++) {
+            map.put(i, "42");
+            assertNull(map.merge(i, "43", (ov, nv) -> null));
+            assertFalse(map.containsKey(i));
+        }
+    }
+
+    @Test
+    void testConflictingHash() {
+        final var k1 = new ZeroHashInt(1);
+        final var k2 = new ZeroHashInt(2);
+        final var k2dup = new ZeroHashInt(2);
+        final var v1 = new ZeroHashInt(4);
+        final var v2 = new ZeroHashInt(5);
+
+        final var map = TrieMap.<ZeroHashInt, ZeroHashInt>create();
+        assertSame(v1, map.merge(k1, v1, (ov, nv) -> fail("Should not have been called")));
+        assertSame(v2, map.merge(k2, v2, (ov, nv) -> fail("Should not have been called")));
+        assertSame(v1, map.merge(k2dup, v1, (ov, nv) -> {
+            assertSame(v2, ov);
+            return nv;
+        }));
+        assertSame(v1, map.get(k2));
+        assertNull(map.merge(k2dup, v1, (ov, nv) -> null));
+        assertFalse(map.containsKey(k2));
+        assertSame(v1, map.get(k1));
+    }
 }
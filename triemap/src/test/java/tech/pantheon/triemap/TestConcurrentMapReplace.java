@@ -18,8 +18,14 @@ package tech.pantheon.triemap;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.jupiter.api.Test;
 
 class TestConcurrentMapReplace {
@@ -81,4 +87,84 @@ class TestConcurrentMapReplace {
         assertNull(map.replace(k4, v1));
         assertFalse(map.replace(k4, v1, v2));
     }
+
+    @Test
+    void testReplaceAll() {
+        final var map = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < COUNT; i++) {
+            map.put(i, i);
+        }
+        final var snap = map.immutableSnapshot();
+
+        map.replaceAll((key, value) -> value + key);
+        assertEquals(COUNT, map.size());
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(2 * i, map.get(i));
+            assertEquals(i, snap.get(i));
+        }
+    }
+
+    @Test
+    void testReplaceAllNull() {
+        final var map = TrieMap.<Integer, Integer>create();
+        map.put(1, 1);
+        assertThrows(NullPointerException.class, () -> map.replaceAll(null));
+        assertThrows(NullPointerException.class, () -> map.replaceAll((key, value) -> null));
+        assertEquals(1, map.get(1));
+    }
+
+    @Test
+    void testReplaceAllConflictingHash() {
+        final var map = TrieMap.<ZeroHashInt, Integer>create();
+        for (int i = 0; i < 10; i++) {
+            map.put(new ZeroHashInt(i), i);
+        }
+
+        map.replaceAll((key, value) -> -value);
+        assertEquals(10, map.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(-i, map.get(new ZeroHashInt(i)));
+        }
+    }
+
+    @Test
+    void testConcurrentReplaceAll() throws Exception {
+        final var map = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < COUNT; i++) {
+            map.put(i, 0);
+        }
+
+        final int nThreads = 2;
+        final int rounds = 10;
+        final var done = new AtomicBoolean();
+        final var es = Executors.newFixedThreadPool(nThreads + 1);
+        try {
+            // Concurrent snapshots freeze subtrees while replaceAll() is running
+            final var snapshots = es.submit(() -> {
+                while (!done.get()) {
+                    map.mutableSnapshot();
+                }
+            });
+
+            final var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < nThreads; i++) {
+                futures.add(es.submit(() -> {
+                    for (int j = 0; j < rounds; j++) {
+                        map.replaceAll((key, value) -> value + 1);
+                    }
+                }));
+            }
+            for (var future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+            done.set(true);
+            snapshots.get(5, TimeUnit.MINUTES);
+        } finally {
+            es.shutdownNow();
+        }
+
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(nThreads * rounds, map.get(i));
+        }
+    }
 }
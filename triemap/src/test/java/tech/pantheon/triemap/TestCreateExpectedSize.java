@@ -0,0 +1,101 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class TestCreateExpectedSize {
+    private static final int COUNT = 50 * 1000;
+
+    @Test
+    void testSmall() {
+        assertEquals(0, rootMain(TrieMap.create(0)).array.length);
+        assertEquals(0, rootMain(TrieMap.create(1000)).array.length);
+    }
+
+    @Test
+    void testLevels() {
+        assertEquals(1, levels(TrieMap.create(1024)));
+        assertEquals(2, levels(TrieMap.create(COUNT)));
+        assertEquals(3, levels(TrieMap.create(Integer.MAX_VALUE)));
+    }
+
+    @Test
+    void testNegative() {
+        assertThrows(IllegalArgumentException.class, () -> TrieMap.create(-1));
+    }
+
+    @Test
+    void testOperations() {
+        final var bt = TrieMap.<Integer, Integer>create(COUNT);
+        assertTrue(bt.isEmpty());
+        for (int i = 0; i < COUNT; i++) {
+            assertNull(bt.put(i, i));
+        }
+        assertEquals(COUNT, bt.size());
+        assertEquals(COUNT, bt.mappingCount());
+        assertEquals(COUNT, bt.entrySet().parallelStream().count());
+
+        final var snap = bt.immutableSnapshot();
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(i, bt.remove(i));
+        }
+        bt.compact();
+        assertTrue(bt.isEmpty());
+        assertEquals(0, bt.mappingCount());
+        assertEquals(COUNT, snap.size());
+
+        for (int i = 0; i < COUNT; i++) {
+            assertNull(bt.get(i));
+            assertNull(bt.put(i, i));
+        }
+        assertEquals(COUNT, bt.size());
+    }
+
+    @Test
+    void testHashCollisions() {
+        final var bt = TrieMap.<ZeroHashInt, Integer>create(COUNT);
+        for (int i = 0; i < 100; i++) {
+            assertNull(bt.put(new ZeroHashInt(i), i));
+        }
+        assertEquals(100, bt.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, bt.remove(new ZeroHashInt(i)));
+        }
+        assertTrue(bt.isEmpty());
+    }
+
+    private static CNode<?, ?> rootMain(final TrieMap<?, ?> map) {
+        return assertInstanceOf(CNode.class, map.readRoot().gcasRead(map));
+    }
+
+    private static int levels(final TrieMap<?, ?> map) {
+        int ret = 0;
+        var cn = rootMain(map);
+        while (cn.array.length != 0) {
+            assertEquals(32, cn.array.length);
+            cn = assertInstanceOf(CNode.class, assertInstanceOf(INode.class, cn.array[0]).gcasRead(map));
+            ret++;
+        }
+        return ret;
+    }
+}
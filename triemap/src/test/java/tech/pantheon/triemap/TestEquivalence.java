@@ -0,0 +1,261 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class TestEquivalence {
+    private static final int COUNT = 50 * 1000;
+
+    private static final class ByteArrayEquivalence extends Equivalence<byte[]> {
+        @java.io.Serial
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public int hash(final byte[] obj) {
+            return Arrays.hashCode(obj);
+        }
+
+        @Override
+        public boolean equivalent(final byte[] first, final byte[] second) {
+            return Arrays.equals(first, second);
+        }
+    }
+
+    // Identity of Strings, all of which collide
+    private static final class CollidingIdentity extends Equivalence<String> {
+        @java.io.Serial
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public int hash(final String obj) {
+            return 0;
+        }
+
+        @Override
+        public boolean equivalent(final String first, final String second) {
+            return first == second;
+        }
+    }
+
+    @Test
+    void testNullEquivalence() {
+        assertThrows(NullPointerException.class, () -> TrieMap.create((Equivalence<Object>) null));
+    }
+
+    @Test
+    void testIdentity() {
+        final var map = TrieMap.<String, Integer>create(Equivalence.identity());
+        final var first = new String("foo");
+        final var second = new String("foo");
+
+        assertNull(map.put(first, 1));
+        assertNull(map.put(second, 2));
+        assertEquals(2, map.size());
+        assertEquals(1, map.get(first));
+        assertEquals(2, map.get(second));
+        assertNull(map.get("bar"));
+        assertFalse(map.containsKey(new String("foo")));
+
+        assertEquals(1, map.remove(first));
+        assertNull(map.get(first));
+        assertEquals(2, map.get(second));
+    }
+
+    @Test
+    void testIdentityMany() {
+        final var map = TrieMap.<String, Integer>create(Equivalence.identity());
+        final var keys = new ArrayList<String>(COUNT);
+        for (int i = 0; i < COUNT; i++) {
+            // Distinct instances with equal values
+            final var key = new String(Integer.toString(i % 100));
+            keys.add(key);
+            assertNull(map.put(key, i));
+        }
+        assertEquals(COUNT, map.size());
+
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(i, map.get(keys.get(i)));
+        }
+        for (int i = 0; i < COUNT; i += 2) {
+            assertEquals(i, map.remove(keys.get(i)));
+        }
+        assertEquals(COUNT / 2, map.size());
+        for (int i = 1; i < COUNT; i += 2) {
+            assertEquals(i, map.get(keys.get(i)));
+        }
+    }
+
+    @Test
+    void testByteArrays() {
+        final var map = TrieMap.<byte[], Integer>create(new ByteArrayEquivalence());
+        for (int i = 0; i < 1000; i++) {
+            assertNull(map.put(Integer.toString(i).getBytes(), i));
+        }
+        assertEquals(1000, map.size());
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, map.get(Integer.toString(i).getBytes()));
+        }
+        assertEquals(5, map.put("5".getBytes(), 6));
+        assertEquals(7, map.merge("5".getBytes(), 1, Integer::sum));
+        assertEquals(7, map.get("5".getBytes()));
+        assertTrue(map.remove("5".getBytes(), 7));
+        assertNull(map.get("5".getBytes()));
+        assertEquals(999, map.size());
+    }
+
+    @Test
+    void testCollidingIdentity() {
+        final var map = TrieMap.<String, Integer>create(new CollidingIdentity());
+        final var keys = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            final var key = new String(Integer.toString(i % 10));
+            keys.add(key);
+            assertNull(map.put(key, i));
+        }
+        assertEquals(100, map.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, map.get(keys.get(i)));
+        }
+        assertNull(map.get("1"));
+
+        for (int i = 0; i < 100; i += 3) {
+            assertEquals(i, map.remove(keys.get(i)));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i % 3 == 0 ? null : i, map.get(keys.get(i)));
+        }
+    }
+
+    @Test
+    void testSnapshotsRetainEquivalence() {
+        final var map = TrieMap.<String, Integer>create(Equivalence.identity());
+        final var key = new String("foo");
+        map.put(key, 1);
+
+        final var immutable = map.immutableSnapshot();
+        assertEquals(1, immutable.get(key));
+        assertNull(immutable.get(new String("foo")));
+
+        final var mutable = map.mutableSnapshot();
+        mutable.put(new String("foo"), 2);
+        assertEquals(2, mutable.size());
+        assertEquals(1, mutable.get(key));
+    }
+
+    @Test
+    void testCompareAndSet() {
+        final var map = TrieMap.<String, Integer>create(Equivalence.identity());
+        final var first = new String("foo");
+        final var second = new String("foo");
+        map.put(first, 1);
+
+        final var expected = new IdentityHashMap<String, Integer>();
+        expected.put(first, 1);
+        final var update = new IdentityHashMap<String, Integer>();
+        update.put(first, 2);
+        update.put(second, 3);
+        assertTrue(map.compareAndSet(expected, update));
+        assertEquals(2, map.get(first));
+        assertEquals(3, map.get(second));
+    }
+
+    @Test
+    void testCompareAndSetEquivalentKeys() {
+        final var map = TrieMap.<byte[], Integer>create(new ByteArrayEquivalence());
+        final var first = "foo".getBytes();
+        final var second = "foo".getBytes();
+        map.put(first, 1);
+
+        // The update refers to the same mapping as the expectation, even though the keys are not equal
+        assertTrue(map.compareAndSet(Map.of(first, 1), Map.of(second, 2)));
+        assertEquals(1, map.size());
+        assertEquals(2, map.get(first));
+        assertFalse(map.compareAndSet(Map.of(second, 1), Map.of(first, 3)));
+        assertEquals(2, map.get(second));
+
+        // Equivalent keys within a single argument are ambiguous
+        final var expected = new IdentityHashMap<byte[], Integer>();
+        expected.put(first, 2);
+        expected.put(second, 2);
+        assertThrows(IllegalArgumentException.class, () -> map.compareAndSet(expected, Map.of()));
+        assertThrows(IllegalArgumentException.class, () -> map.compareAndSet(Map.of(), expected));
+        assertEquals(2, map.get(first));
+    }
+
+    @Test
+    void testSerialization() throws Exception {
+        final var map = TrieMap.<byte[], Integer>create(new ByteArrayEquivalence());
+        map.put(new byte[] { 1, 2 }, 1);
+        map.put(new byte[] { 3 }, 2);
+
+        final var bos = new ByteArrayOutputStream();
+        try (var oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(map);
+        }
+
+        final Object obj;
+        try (var ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            obj = ois.readObject();
+        }
+
+        @SuppressWarnings("unchecked")
+        final var read = (MutableTrieMap<byte[], Integer>) assertInstanceOf(MutableTrieMap.class, obj);
+        assertInstanceOf(ByteArrayEquivalence.class, read.equiv);
+        assertEquals(2, read.size());
+        assertEquals(1, read.get(new byte[] { 1, 2 }));
+        assertEquals(2, read.get(new byte[] { 3 }));
+    }
+
+    @Test
+    void testIdentitySerialization() throws Exception {
+        final var map = TrieMap.<String, Integer>create(Equivalence.identity());
+        map.put("foo", 1);
+
+        final var bos = new ByteArrayOutputStream();
+        try (var oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(map.immutableSnapshot());
+        }
+
+        final Object obj;
+        try (var ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            obj = ois.readObject();
+        }
+
+        final var read = assertInstanceOf(ImmutableTrieMap.class, obj);
+        assertSame(Equivalence.identity(), read.equiv);
+        assertEquals(1, read.size());
+        final var entry = (Map.Entry<?, ?>) read.entrySet().iterator().next();
+        assertEquals(1, read.get(entry.getKey()));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import org.junit.jupiter.api.Test;
+
+class TestHashCollisionsComparable {
+    private static final int COUNT = 50 * 1000;
+
+    private record ZeroHashKey(int value) implements Comparable<ZeroHashKey> {
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof ZeroHashKey other && value == other.value;
+        }
+
+        @Override
+        public int compareTo(final ZeroHashKey other) {
+            return Integer.compare(value, other.value);
+        }
+    }
+
+    @Test
+    void testPutGetRemove() {
+        final var map = TrieMap.<ZeroHashKey, Integer>create();
+        for (int i = 0; i < COUNT; i++) {
+            assertNull(map.put(new ZeroHashKey(i), i));
+        }
+        assertEquals(COUNT, map.size());
+
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(i, map.get(new ZeroHashKey(i)));
+        }
+        assertNull(map.get(new ZeroHashKey(COUNT)));
+
+        for (int i = 0; i < COUNT; i += 2) {
+            assertEquals(i, map.replace(new ZeroHashKey(i), -i));
+        }
+        for (int i = 0; i < COUNT; i += 3) {
+            map.remove(new ZeroHashKey(i));
+        }
+
+        final var expected = new HashMap<ZeroHashKey, Integer>();
+        for (int i = 0; i < COUNT; i++) {
+            if (i % 3 != 0) {
+                expected.put(new ZeroHashKey(i), i % 2 == 0 ? -i : i);
+            }
+        }
+        assertEquals(expected, map);
+        assertEquals(expected, map.immutableSnapshot());
+
+        for (int i = 0; i < COUNT; i++) {
+            map.remove(new ZeroHashKey(i));
+        }
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void testPutAll() {
+        final var expected = new HashMap<ZeroHashKey, Integer>();
+        for (int i = 0; i < COUNT; i++) {
+            expected.put(new ZeroHashKey(i), i);
+        }
+
+        final var map = TrieMap.<ZeroHashKey, Integer>create();
+        map.putAll(expected);
+        assertEquals(expected, map);
+    }
+
+    @Test
+    void testSnapshotIsolation() {
+        final var map = TrieMap.<ZeroHashKey, Integer>create();
+        for (int i = 0; i < 100; i++) {
+            map.put(new ZeroHashKey(i), i);
+        }
+
+        final var snapshot = map.mutableSnapshot();
+        for (int i = 0; i < 100; i++) {
+            snapshot.remove(new ZeroHashKey(i));
+        }
+        assertTrue(snapshot.isEmpty());
+        assertEquals(100, map.size());
+        assertEquals(50, map.get(new ZeroHashKey(50)));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+
+class TestMappingCount {
+    private static final int COUNT = 50 * 1000;
+
+    private static void assertMappingCount(final TrieMap<?, ?> map) {
+        assertEquals(map.size(), map.mappingCount());
+    }
+
+    @Test
+    void testSingleKeyOperations() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        assertEquals(0, bt.mappingCount());
+        for (int i = 0; i < COUNT; i++) {
+            bt.put(i, i);
+            bt.put(i, -i);
+        }
+        assertEquals(COUNT, bt.mappingCount());
+
+        for (int i = 0; i < COUNT; i += 2) {
+            bt.remove(i);
+            bt.putIfAbsent(i + 1, i);
+            bt.replace(i + 1, -i - 1, i);
+        }
+        assertEquals(COUNT / 2, bt.mappingCount());
+
+        for (int i = 0; i < COUNT; i++) {
+            final int key = i;
+            bt.compute(i, (k, v) -> v == null ? k : null);
+            bt.computeIfAbsent(i + COUNT, k -> k);
+            bt.computeIfPresent(i + COUNT, (k, v) -> key % 3 == 0 ? null : v);
+            bt.merge(i, i, (v1, v2) -> null);
+        }
+        assertMappingCount(bt);
+
+        bt.clear();
+        assertEquals(0, bt.mappingCount());
+    }
+
+    @Test
+    void testConflictingHash() {
+        final var bt = TrieMap.<ZeroHashInt, Integer>create();
+        for (int i = 0; i < 100; i++) {
+            bt.put(new ZeroHashInt(i), i);
+        }
+        assertEquals(100, bt.mappingCount());
+        for (int i = 0; i < 100; i += 2) {
+            bt.remove(new ZeroHashInt(i));
+            bt.compute(new ZeroHashInt(i + 1), (k, v) -> v + 1);
+        }
+        assertEquals(50, bt.mappingCount());
+        bt.keySet().removeIf(key -> key.hashCode() == 0);
+        assertEquals(0, bt.mappingCount());
+        assertTrue(bt.isEmpty());
+    }
+
+    @Test
+    void testBulkOperations() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        final var batch = new HashMap<Integer, Integer>();
+        for (int i = 0; i < COUNT; i++) {
+            batch.put(i, i);
+        }
+        bt.putAll(batch);
+        assertEquals(COUNT, bt.mappingCount());
+
+        // Overlapping batch
+        final var other = new HashMap<Integer, Integer>();
+        for (int i = COUNT / 2; i < COUNT * 3 / 2; i++) {
+            other.put(i, -i);
+        }
+        bt.putAll(other);
+        assertEquals(COUNT * 3 / 2, bt.mappingCount());
+
+        bt.replaceAll((k, v) -> v + 1);
+        assertEquals(COUNT * 3 / 2, bt.mappingCount());
+
+        bt.keySet().removeIf(key -> key % 3 == 0);
+        assertMappingCount(bt);
+
+        assertTrue(bt.compareAndSet(Map.of(1, 2, 2, 3), Map.of(1, 2, -1, -1, -2, -2)));
+        assertMappingCount(bt);
+
+        bt.values().removeIf(value -> true);
+        assertEquals(0, bt.mappingCount());
+    }
+
+    @Test
+    void testSnapshots() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < COUNT; i++) {
+            bt.put(i, i);
+        }
+        final var snap = bt.immutableSnapshot();
+        assertEquals(COUNT, snap.mappingCount());
+
+        final var fork = bt.mutableSnapshot();
+        for (int i = 0; i < COUNT; i += 2) {
+            bt.remove(i);
+            fork.put(i + COUNT, i);
+        }
+        assertEquals(COUNT / 2, bt.mappingCount());
+        assertEquals(COUNT * 3 / 2, fork.mappingCount());
+        assertEquals(COUNT, snap.mappingCount());
+
+        // Committed changes are accounted for in the origin
+        assertTrue(fork.commit());
+        assertEquals(COUNT, bt.mappingCount());
+        assertMappingCount(bt);
+
+        final var copy = snap.mutableSnapshot();
+        copy.remove(0);
+        assertEquals(COUNT - 1, copy.mappingCount());
+    }
+
+    @Test
+    void testConcurrentUpdates() throws InterruptedException, ExecutionException, TimeoutException {
+        final int nThreads = 4;
+        final var bt = TrieMap.<Integer, Integer>create();
+        final var es = Executors.newFixedThreadPool(nThreads + 1);
+        try {
+            final var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < nThreads; i++) {
+                futures.add(es.submit(() -> {
+                    final var random = ThreadLocalRandom.current();
+                    for (int j = 0; j < COUNT; j++) {
+                        final int key = random.nextInt(COUNT / 10);
+                        if (random.nextBoolean()) {
+                            bt.put(key, j);
+                        } else {
+                            bt.remove(key);
+                        }
+                    }
+                }));
+            }
+            futures.add(es.submit(() -> {
+                for (int j = 0; j < 100; j++) {
+                    bt.immutableSnapshot();
+                }
+            }));
+            for (var future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            es.shutdownNow();
+        }
+
+        assertMappingCount(bt);
+    }
+}
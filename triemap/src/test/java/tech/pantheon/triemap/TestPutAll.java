@@ -0,0 +1,176 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class TestPutAll {
+    private static final int COUNT = 50 * 1000;
+
+    @Test
+    void testPutAllEmpty() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        bt.putAll(Map.of());
+        assertTrue(bt.isEmpty());
+    }
+
+    @Test
+    void testPutAll() {
+        final var expected = new HashMap<Integer, Integer>();
+        for (int i = 0; i < COUNT; i++) {
+            expected.put(i, i);
+        }
+
+        final var bt = TrieMap.<Integer, Integer>create();
+        bt.putAll(expected);
+        assertEquals(expected, bt);
+        assertEquals(COUNT, bt.size());
+    }
+
+    @Test
+    void testPutAllMerge() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < COUNT; i += 3) {
+            bt.put(i, -i);
+        }
+
+        final var map = new HashMap<Integer, Integer>();
+        for (int i = 0; i < COUNT; i += 2) {
+            map.put(i, i);
+        }
+        bt.putAll(map);
+
+        for (int i = 0; i < COUNT; i++) {
+            final Integer expected;
+            if (i % 2 == 0) {
+                expected = i;
+            } else if (i % 3 == 0) {
+                expected = -i;
+            } else {
+                expected = null;
+            }
+            assertEquals(expected, bt.get(i));
+        }
+    }
+
+    @Test
+    void testPutAllSnapshot() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < COUNT; i++) {
+            bt.put(i, i);
+        }
+        final var snap = bt.immutableSnapshot();
+
+        final var map = new HashMap<Integer, Integer>();
+        for (int i = 0; i < 2 * COUNT; i++) {
+            map.put(i, -i);
+        }
+        bt.putAll(map);
+
+        assertEquals(map, bt);
+        assertEquals(COUNT, snap.size());
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(i, snap.get(i));
+        }
+    }
+
+    @Test
+    void testPutAllConflictingHash() {
+        final var bt = TrieMap.<ZeroHashInt, Integer>create();
+        bt.put(new ZeroHashInt(0), -1);
+
+        final var map = new HashMap<ZeroHashInt, Integer>();
+        for (int i = 0; i < 10; i++) {
+            map.put(new ZeroHashInt(i), i);
+        }
+        bt.putAll(map);
+        assertEquals(map, bt);
+
+        map.clear();
+        for (int i = 5; i < 15; i++) {
+            map.put(new ZeroHashInt(i), -i);
+        }
+        bt.putAll(map);
+
+        assertEquals(15, bt.size());
+        for (int i = 0; i < 15; i++) {
+            assertEquals(i < 5 ? i : -i, bt.get(new ZeroHashInt(i)));
+        }
+    }
+
+    @Test
+    void testPutAllDuplicateKeys() {
+        final var map = new IdentityHashMap<String, String>();
+        map.put(new String("a"), "1");
+        map.put(new String("a"), "2");
+        map.put("b", "3");
+
+        final var bt = TrieMap.<String, String>create();
+        bt.putAll(map);
+        assertEquals(2, bt.size());
+        assertEquals("3", bt.get("b"));
+        assertTrue(map.containsValue(bt.get("a")));
+    }
+
+    @Test
+    void testPutAllNull() {
+        final var map = new HashMap<String, String>();
+        map.put("a", null);
+
+        final var bt = TrieMap.<String, String>create();
+        assertThrows(NullPointerException.class, () -> bt.putAll(map));
+    }
+
+    @Test
+    void testMultiThreadPutAll() throws InterruptedException {
+        final int nThreads = 4;
+        final var es = Executors.newFixedThreadPool(nThreads);
+        final var bt = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < nThreads; i++) {
+            final int threadNo = i;
+            es.execute(() -> {
+                final var map = new HashMap<Integer, Integer>();
+                for (int j = 0; j < COUNT; j++) {
+                    if (j % nThreads == threadNo) {
+                        map.put(j, j);
+                        if (map.size() == 1000) {
+                            bt.putAll(map);
+                            map.clear();
+                        }
+                    }
+                }
+                bt.putAll(map);
+            });
+        }
+
+        es.shutdown();
+        es.awaitTermination(5, TimeUnit.MINUTES);
+
+        assertEquals(COUNT, bt.size());
+        for (int j = 0; j < COUNT; j++) {
+            assertEquals(j, bt.get(j));
+        }
+    }
+}
@@ -16,11 +16,15 @@
 package tech.pantheon.triemap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Iterator;
 import java.util.Map.Entry;
+import java.util.Spliterator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -31,7 +35,7 @@ import org.junit.jupiter.api.Test;
 class TestReadOnlyAndUpdatableIterators {
     private static final int MAP_SIZE = 200;
 
-    private TrieMap<Integer, Integer> bt;
+    private MutableTrieMap<Integer, Integer> bt;
 
     @BeforeEach
     void setUp() {
@@ -81,6 +85,41 @@ class TestReadOnlyAndUpdatableIterators {
         tryRemove(bt.immutableSnapshot().iterator());
     }
 
+    @Test
+    void testReadOnlyEntrySetIteratorSet() {
+        trySet(bt.readOnlyEntrySet().iterator());
+    }
+
+    @Test
+    void testReadOnlyEntrySetIteratorRemove() {
+        tryRemove(bt.readOnlyEntrySet().iterator());
+    }
+
+    @Test
+    void testReadOnlyKeySetIteratorRemove() {
+        tryRemove(bt.readOnlyKeySet().iterator());
+    }
+
+    @Test
+    void testReadOnlyViews() {
+        final var entrySet = bt.readOnlyEntrySet();
+        final var keySet = bt.readOnlyKeySet();
+        assertThrows(UnsupportedOperationException.class, () -> entrySet.clear());
+        assertThrows(UnsupportedOperationException.class, () -> keySet.remove(0));
+
+        // Entries are handed out directly
+        entrySet.forEach(entry -> assertInstanceOf(DefaultEntry.class, entry));
+        assertEquals(MAP_SIZE, entrySet.stream().count());
+        assertTrue(entrySet.spliterator().hasCharacteristics(Spliterator.CONCURRENT));
+        assertFalse(keySet.spliterator().hasCharacteristics(Spliterator.IMMUTABLE));
+
+        // Changes to the map are reflected
+        bt.remove(0);
+        assertEquals(MAP_SIZE - 1, entrySet.size());
+        assertFalse(keySet.contains(0));
+        assertTrue(keySet.contains(1));
+    }
+
     @Test
     void testIterator() {
         var it = bt.iterator();
@@ -0,0 +1,126 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class TestRemoveIf {
+    private static final int COUNT = 50 * 1000;
+
+    @Test
+    void testRemoveIf() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < COUNT; i++) {
+            bt.put(i, i);
+        }
+        final var snap = bt.immutableSnapshot();
+
+        assertTrue(bt.keySet().removeIf(key -> key % 2 == 0));
+        assertFalse(bt.keySet().removeIf(key -> key % 2 == 0));
+        assertEquals(COUNT / 2, bt.size());
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(i % 2 == 0 ? null : i, bt.get(i));
+            assertEquals(i, snap.get(i));
+        }
+
+        assertTrue(bt.values().removeIf(value -> true));
+        assertTrue(bt.isEmpty());
+        assertEquals(COUNT, snap.size());
+        // The trie has been fully contracted
+        assertEquals(0, assertInstanceOf(CNode.class, bt.readRoot().gcasRead(bt)).array.length);
+
+        // Reuse the map after it has been emptied
+        for (int i = 0; i < COUNT; i++) {
+            assertNull(bt.put(i, -i));
+        }
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(-i, bt.get(i));
+        }
+    }
+
+    @Test
+    void testRemoveIfConflictingHash() {
+        final var bt = TrieMap.<ZeroHashInt, Integer>create();
+        for (int i = 0; i < 10; i++) {
+            bt.put(new ZeroHashInt(i), i);
+        }
+
+        // Leaves an LNode
+        assertTrue(bt.values().removeIf(value -> value < 5));
+        assertEquals(5, bt.size());
+        // Leaves a TNode
+        assertTrue(bt.values().removeIf(value -> value < 9));
+        assertEquals(1, bt.size());
+        assertEquals(9, bt.get(new ZeroHashInt(9)));
+
+        for (int i = 0; i < 10; i++) {
+            bt.put(new ZeroHashInt(i), i);
+        }
+        // Leaves nothing
+        assertTrue(bt.entrySet().removeIf(entry -> true));
+        assertTrue(bt.isEmpty());
+        assertEquals(0, assertInstanceOf(CNode.class, bt.readRoot().gcasRead(bt)).array.length);
+        bt.put(new ZeroHashInt(1), 1);
+        assertEquals(1, bt.get(new ZeroHashInt(1)));
+    }
+
+    @Test
+    void testConcurrentRemoveIf() throws Exception {
+        final var bt = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < COUNT; i++) {
+            bt.put(i, i);
+        }
+
+        final var done = new AtomicBoolean();
+        final var es = Executors.newFixedThreadPool(2);
+        try {
+            // Concurrent snapshots freeze subtrees and concurrent inserts add non-matching keys
+            final var other = es.submit(() -> {
+                int key = COUNT;
+                while (!done.get()) {
+                    bt.mutableSnapshot();
+                    bt.put(key, key);
+                    key += 2;
+                }
+            });
+
+            for (int i = 0; i < 3; i++) {
+                final int remainder = i;
+                bt.keySet().removeIf(key -> key < COUNT && key % 3 == remainder);
+            }
+            done.set(true);
+            other.get(5, TimeUnit.MINUTES);
+        } finally {
+            es.shutdownNow();
+        }
+
+        for (int i = 0; i < COUNT; i++) {
+            assertNull(bt.get(i));
+        }
+        for (var key : bt.keySet()) {
+            assertTrue(key >= COUNT);
+        }
+    }
+}
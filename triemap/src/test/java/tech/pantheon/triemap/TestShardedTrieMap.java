@@ -0,0 +1,347 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class TestShardedTrieMap {
+    private static final int COUNT = 50 * 1000;
+
+    private static final class ByteArrayEquivalence extends Equivalence<byte[]> {
+        @java.io.Serial
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public int hash(final byte[] obj) {
+            return Arrays.hashCode(obj);
+        }
+
+        @Override
+        public boolean equivalent(final byte[] first, final byte[] second) {
+            return Arrays.equals(first, second);
+        }
+    }
+
+    @Test
+    void testInvalidShards() {
+        assertThrows(IllegalArgumentException.class, () -> ShardedTrieMap.create(0));
+        assertThrows(IllegalArgumentException.class, () -> ShardedTrieMap.create(-1));
+        assertThrows(IllegalArgumentException.class, () -> ShardedTrieMap.create(3));
+        assertThrows(IllegalArgumentException.class, () -> ShardedTrieMap.create(2048));
+    }
+
+    @Test
+    void testSingleShard() {
+        final var map = ShardedTrieMap.<Integer, Integer>create(1);
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(0, map.shardIndex(i));
+            assertNull(map.put(i, i));
+        }
+        assertEquals(COUNT, map.size());
+    }
+
+    @Test
+    void testOperations() {
+        final var map = ShardedTrieMap.<Integer, Integer>create(16);
+        final var shards = new HashSet<Integer>();
+        for (int i = 0; i < COUNT; i++) {
+            assertNull(map.put(i, i));
+            shards.add(map.shardIndex(i));
+        }
+        assertEquals(16, shards.size());
+        assertEquals(COUNT, map.size());
+        assertEquals(COUNT, map.mappingCount());
+
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(i, map.get(i));
+            assertTrue(map.containsKey(i));
+            assertEquals(i, map.putIfAbsent(i, 0));
+            assertEquals(i + 1, map.merge(i, 1, Integer::sum));
+            assertEquals(i, map.computeIfPresent(i, (key, value) -> value - 1));
+            assertTrue(map.replace(i, i, i + 1));
+            assertEquals(i + 1, map.replace(i, i));
+        }
+        assertNull(map.get(COUNT));
+        assertEquals(COUNT, map.computeIfAbsent(COUNT, key -> key));
+        assertTrue(map.remove(COUNT, COUNT));
+        assertNull(map.compute(COUNT, (key, value) -> null));
+
+        map.replaceAll((key, value) -> value + 1);
+        map.forEach((key, value) -> assertEquals(key + 1, value));
+        assertEquals(COUNT, map.entrySet().stream().count());
+        assertEquals(COUNT, map.keySet().stream().distinct().count());
+
+        final var it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getKey() % 2 == 0) {
+                it.remove();
+            }
+        }
+        assertEquals(COUNT / 2, map.size());
+        assertEquals(COUNT / 2, map.mappingCount());
+        assertEquals(2, map.remove(1));
+        assertFalse(map.entrySet().contains(Map.entry(1, 2)));
+        assertTrue(map.entrySet().contains(Map.entry(3, 4)));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.mappingCount());
+        assertNull(map.put(1, 1));
+        assertEquals(1, map.mappingCount());
+    }
+
+    @Test
+    void testPutAll() {
+        final var source = new HashMap<Integer, Integer>();
+        for (int i = 0; i < COUNT; i++) {
+            source.put(i, i);
+        }
+
+        final var map = ShardedTrieMap.<Integer, Integer>create(8);
+        map.putAll(source);
+        assertEquals(source, map);
+        assertEquals(source.hashCode(), map.hashCode());
+    }
+
+    @Test
+    void testEquivalence() {
+        final var map = TrieMap.<byte[], Integer>builder()
+            .equivalence(new ByteArrayEquivalence())
+            .expectedSize(COUNT)
+            .buildSharded(16);
+        final var shards = new HashSet<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            final var key = Integer.toString(i).getBytes();
+            assertNull(map.put(key, i));
+            // Equivalent keys need to be routed to the same shard
+            assertEquals(map.shardIndex(key), map.shardIndex(Integer.toString(i).getBytes()));
+            shards.add(map.shardIndex(key));
+        }
+        assertEquals(16, shards.size());
+        assertEquals(1000, map.size());
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, map.get(Integer.toString(i).getBytes()));
+        }
+        assertEquals(5, map.put("5".getBytes(), 6));
+        assertTrue(map.remove("5".getBytes(), 6));
+        assertNull(map.get("5".getBytes()));
+
+        final var snap = map.snapshot();
+        assertEquals(999, snap.size());
+        assertEquals(7, snap.get("7".getBytes()));
+    }
+
+    @Test
+    void testSnapshot() {
+        final var map = ShardedTrieMap.<Integer, Integer>create(16);
+        for (int i = 0; i < COUNT; i++) {
+            map.put(i, i);
+        }
+
+        final var snap = map.snapshot();
+        assertSame(snap, snap.snapshot());
+        for (int i = 0; i < COUNT; i++) {
+            map.remove(i);
+        }
+        map.put(-1, -1);
+
+        assertEquals(1, map.size());
+        assertEquals(COUNT, snap.size());
+        assertEquals(COUNT, snap.mappingCount());
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(i, snap.get(i));
+        }
+        assertNull(snap.get(-1));
+
+        assertThrows(UnsupportedOperationException.class, () -> snap.put(0, 0));
+        assertThrows(UnsupportedOperationException.class, () -> snap.remove(0));
+        assertThrows(UnsupportedOperationException.class, snap::clear);
+        final var it = snap.entrySet().iterator();
+        it.next();
+        assertThrows(UnsupportedOperationException.class, it::remove);
+    }
+
+    @Test
+    void testConsistentSnapshots() throws InterruptedException, ExecutionException, TimeoutException {
+        final var map = ShardedTrieMap.<Integer, Integer>create(16);
+        // Two keys in different shards
+        final int first = 0;
+        int second = 1;
+        while (map.shardIndex(second) == map.shardIndex(first)) {
+            second++;
+        }
+        final int other = second;
+        map.put(first, 0);
+        map.put(other, 0);
+
+        final var done = new AtomicBoolean();
+        final var es = Executors.newFixedThreadPool(3);
+        try {
+            // The first key is always updated before the other, hence it is either equal or one greater
+            final Future<?> writer = es.submit(() -> {
+                for (int i = 1; !done.get(); i++) {
+                    map.put(first, i);
+                    map.put(other, i);
+                }
+            });
+            // Unrelated updates in all shards
+            final Future<?> noise = es.submit(() -> {
+                for (int i = 0; !done.get(); i = (i + 1) % COUNT) {
+                    map.put(i + 2 * COUNT, i);
+                    map.remove(i + 2 * COUNT);
+                }
+            });
+
+            for (int i = 0; i < 1000; i++) {
+                final var snap = map.snapshot();
+                final int diff = snap.get(first) - snap.get(other);
+                assertTrue(diff == 0 || diff == 1, "Inconsistent snapshot " + snap.get(first) + " " + snap.get(other));
+            }
+
+            done.set(true);
+            writer.get(5, TimeUnit.MINUTES);
+            noise.get(5, TimeUnit.MINUTES);
+        } finally {
+            es.shutdownNow();
+        }
+
+        assertNotEquals(0, map.get(first));
+    }
+
+    @Test
+    void testSnapshotUnderLoad() throws InterruptedException, ExecutionException, TimeoutException {
+        final int nThreads = 4;
+        final var map = ShardedTrieMap.<Integer, Integer>create(16);
+        final var done = new AtomicBoolean();
+        final var es = Executors.newFixedThreadPool(nThreads);
+        try {
+            // Sustained updates to all shards, which help snapshots complete rather than abort them
+            final var writers = new ArrayList<Future<?>>();
+            for (int t = 0; t < nThreads; t++) {
+                final int base = t * COUNT;
+                writers.add(es.submit(() -> {
+                    for (int i = 0; !done.get(); i = (i + 1) % COUNT) {
+                        map.put(base + i, i);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < 1000; i++) {
+                final var snap = map.snapshot();
+                assertTrue(snap.mappingCount() <= nThreads * COUNT);
+                assertTrue(map.size() <= nThreads * COUNT);
+            }
+
+            done.set(true);
+            for (var writer : writers) {
+                writer.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            es.shutdownNow();
+        }
+
+        assertEquals(map.size(), map.snapshot().size());
+    }
+
+    @Test
+    void testSnapshotSmallShards() throws InterruptedException, ExecutionException, TimeoutException {
+        final int nThreads = 4;
+        final int keys = 16;
+        final var map = ShardedTrieMap.<Integer, Integer>create(16);
+        final var done = new AtomicBoolean();
+        final var es = Executors.newFixedThreadPool(nThreads + 1);
+        try {
+            // Each shard holds at most a few mappings, hence every update rewrites the main node of a shard's root
+            final var writers = new ArrayList<Future<?>>();
+            for (int t = 0; t < nThreads; t++) {
+                final int base = t * keys;
+                writers.add(es.submit(() -> {
+                    for (int i = 0; !done.get(); i = (i + 1) % keys) {
+                        map.put(base + i, i);
+                        map.remove(base + (i + keys / 2) % keys);
+                    }
+                }));
+            }
+
+            // Snapshots need to complete despite the updates
+            final Future<?> snapshots = es.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    final var snap = map.snapshot();
+                    assertEquals(snap.size(), snap.entrySet().stream().count());
+                    assertTrue(snap.size() <= nThreads * keys);
+                    map.clear();
+                }
+            });
+            snapshots.get(5, TimeUnit.MINUTES);
+
+            done.set(true);
+            for (var writer : writers) {
+                writer.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    @Test
+    void testConcurrentClear() throws InterruptedException, ExecutionException, TimeoutException {
+        final var map = ShardedTrieMap.<Integer, Integer>create(4);
+        final var done = new AtomicBoolean();
+        final var es = Executors.newSingleThreadExecutor();
+        try {
+            final Future<?> writer = es.submit(() -> {
+                for (int i = 0; !done.get(); i = (i + 1) % COUNT) {
+                    map.put(i, i);
+                }
+            });
+
+            for (int i = 0; i < 100; i++) {
+                map.clear();
+                final var snap = map.snapshot();
+                assertEquals(snap.size(), snap.entrySet().stream().count());
+            }
+
+            done.set(true);
+            writer.get(5, TimeUnit.MINUTES);
+        } finally {
+            es.shutdownNow();
+        }
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(0, map.mappingCount());
+    }
+}
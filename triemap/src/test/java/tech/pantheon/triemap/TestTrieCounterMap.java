@@ -0,0 +1,143 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class TestTrieCounterMap {
+    private static final int COUNT = 50 * 1000;
+
+    @Test
+    void testCounters() {
+        final var counters = TrieCounterMap.<String>create();
+        assertEquals(0, counters.sum("a"));
+        counters.increment("a");
+        counters.add("a", 5);
+        counters.add("b", -3);
+        assertEquals(6, counters.sum("a"));
+        assertEquals(-3, counters.sum("b"));
+        assertEquals(Map.of("a", 6L, "b", -3L), counters.snapshot());
+        // Uncontended counters are not inflated
+        assertEquals(2, counters.cellCount());
+
+        assertEquals(6, counters.remove("a"));
+        assertEquals(0, counters.remove("a"));
+        assertEquals(Map.of("b", -3L), counters.snapshot());
+        assertEquals(1, counters.cellCount());
+    }
+
+    @Test
+    void testNull() {
+        final var counters = TrieCounterMap.<String>create();
+        assertThrows(NullPointerException.class, () -> counters.increment(null));
+        assertThrows(NullPointerException.class, () -> counters.sum(null));
+        assertThrows(NullPointerException.class, () -> counters.remove(null));
+    }
+
+    @Test
+    void testHotKey() throws InterruptedException, ExecutionException, TimeoutException {
+        final int nThreads = 8;
+        final var counters = new TrieCounterMap<Integer>(8);
+        final var done = new AtomicBoolean();
+        final var es = Executors.newFixedThreadPool(nThreads + 1);
+        try {
+            // Increments of key 0 and 1 are paired, hence a consistent snapshot can never observe 1 being ahead of 0
+            final var snapshots = es.submit(() -> {
+                while (!done.get()) {
+                    final var snap = counters.snapshot();
+                    final long first = snap.getOrDefault(0, 0L);
+                    final long second = snap.getOrDefault(1, 0L);
+                    assertTrue(second <= first, () -> second + " > " + first);
+                }
+            });
+
+            final var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < nThreads; i++) {
+                futures.add(es.submit(() -> {
+                    for (int j = 0; j < COUNT; j++) {
+                        counters.increment(0);
+                        counters.increment(1);
+                    }
+                }));
+            }
+            for (var future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+            done.set(true);
+            snapshots.get(5, TimeUnit.MINUTES);
+        } finally {
+            es.shutdownNow();
+        }
+
+        assertEquals(nThreads * COUNT, counters.sum(0));
+        assertEquals(nThreads * COUNT, counters.sum(1));
+        assertEquals(Map.of(0, (long) nThreads * COUNT, 1, (long) nThreads * COUNT), counters.snapshot());
+        assertEquals(nThreads * COUNT, counters.remove(0));
+        assertEquals(0, counters.sum(0));
+    }
+
+    @Test
+    void testConcurrentRemove() throws InterruptedException, ExecutionException, TimeoutException {
+        final int nThreads = 8;
+        final var counters = new TrieCounterMap<Integer>(8);
+        final var done = new AtomicBoolean();
+        final var es = Executors.newFixedThreadPool(nThreads + 1);
+        final long removed;
+        try {
+            // Every increment must be accounted for by exactly one removal
+            final var remover = es.submit(() -> {
+                long ret = 0;
+                while (!done.get()) {
+                    ret += counters.remove(0);
+                }
+                return ret;
+            });
+
+            final var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < nThreads; i++) {
+                futures.add(es.submit(() -> {
+                    for (int j = 0; j < COUNT; j++) {
+                        counters.increment(0);
+                    }
+                }));
+            }
+            for (var future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+            done.set(true);
+            removed = remover.get(5, TimeUnit.MINUTES);
+        } finally {
+            es.shutdownNow();
+        }
+
+        assertEquals(nThreads * COUNT, removed + counters.remove(0));
+        assertEquals(Map.of(), counters.snapshot());
+        // Inflated widths are removed along with the stripes
+        assertEquals(0, counters.cellCount());
+    }
+}
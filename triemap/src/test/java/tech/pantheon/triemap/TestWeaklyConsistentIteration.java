@@ -0,0 +1,160 @@
+/*
+ * (C) Copyright 2026 PANTHEON.tech, s.r.o. and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.pantheon.triemap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map.Entry;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class TestWeaklyConsistentIteration {
+    private static final int COUNT = 50 * 1000;
+
+    @Test
+    void testNoSnapshot() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < COUNT; i++) {
+            bt.put(i, i);
+        }
+
+        final var root = bt.readRoot();
+        final var main = root.gcasRead(bt);
+        assertEquals(COUNT, bt.entrySet().stream().count());
+        assertEquals(COUNT, bt.keySet().stream().distinct().count());
+        assertEquals(COUNT, bt.values().parallelStream().distinct().count());
+        bt.forEach((key, value) -> assertEquals(key, value));
+
+        // Iteration has not touched the root
+        assertSame(root, bt.readRoot());
+        assertSame(main, root.gcasRead(bt));
+    }
+
+    @Test
+    void testIteratorObservesModifications() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < COUNT; i++) {
+            bt.put(i, i);
+        }
+
+        final var seen = new HashSet<Integer>();
+        final var it = bt.entrySet().iterator();
+        while (it.hasNext()) {
+            final var entry = it.next();
+            assertTrue(seen.add(entry.getKey()));
+            // Remove the next key, which may or may not have been visited
+            bt.remove(entry.getKey() + 1);
+        }
+        for (int i = 0; i < COUNT; i++) {
+            if (!seen.contains(i)) {
+                assertNull(bt.get(i));
+            }
+        }
+    }
+
+    @Test
+    void testSpliterator() {
+        final var bt = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < COUNT; i++) {
+            bt.put(i, i);
+        }
+
+        final var spliterators = new ArrayList<Spliterator<Entry<Integer, Integer>>>();
+        spliterators.add(bt.entrySet().spliterator());
+        for (int i = 0; i < spliterators.size() && spliterators.size() < 64; i++) {
+            final var prefix = spliterators.get(i).trySplit();
+            if (prefix != null) {
+                spliterators.add(prefix);
+                i--;
+            }
+        }
+        assertTrue(spliterators.size() > 32);
+
+        final var seen = new HashSet<Integer>();
+        for (var spliterator : spliterators) {
+            assertTrue(spliterator.hasCharacteristics(Spliterator.CONCURRENT));
+            spliterator.forEachRemaining(entry -> assertTrue(seen.add(entry.getKey())));
+        }
+        assertEquals(COUNT, seen.size());
+    }
+
+    @Test
+    void testSpliteratorConflictingHash() {
+        final var bt = TrieMap.<ZeroHashInt, Integer>create();
+        for (int i = 0; i < 100; i++) {
+            bt.put(new ZeroHashInt(i), i);
+        }
+
+        final var spliterator = bt.keySet().spliterator();
+        // Descends all the way to the LNode, which cannot be split
+        assertNull(spliterator.trySplit());
+        assertEquals(100, bt.keySet().parallelStream().collect(Collectors.toSet()).size());
+
+        final var snap = bt.immutableSnapshot();
+        assertEquals(100, snap.entrySet().parallelStream().count());
+        assertTrue(snap.entrySet().spliterator().hasCharacteristics(Spliterator.IMMUTABLE));
+    }
+
+    @Test
+    void testConcurrentIteration() throws InterruptedException, ExecutionException, TimeoutException {
+        final var bt = TrieMap.<Integer, Integer>create();
+        for (int i = 0; i < COUNT; i += 2) {
+            bt.put(i, i);
+        }
+
+        final var done = new AtomicBoolean();
+        final var es = Executors.newSingleThreadExecutor();
+        try {
+            final var writer = es.submit(() -> {
+                // Odd keys come and go
+                for (int i = 1; !done.get(); i = (i + 2) % COUNT) {
+                    bt.put(i, i);
+                    bt.remove(i);
+                }
+            });
+
+            for (int iteration = 0; iteration < 20; iteration++) {
+                final var seen = new HashSet<Integer>();
+                for (var key : bt.keySet()) {
+                    assertNotNull(key);
+                    assertTrue(seen.add(key));
+                }
+                // Even keys are present throughout, hence they have to be seen
+                for (int i = 0; i < COUNT; i += 2) {
+                    assertTrue(seen.contains(i));
+                }
+                assertEquals(COUNT / 2, bt.values().parallelStream().filter(value -> value % 2 == 0).count());
+            }
+
+            done.set(true);
+            writer.get(5, TimeUnit.MINUTES);
+        } finally {
+            es.shutdownNow();
+        }
+    }
+}